@@ -0,0 +1,251 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.benchmark;
+
+import android.app.Activity;
+import android.content.Context;
+import android.support.v4.view.ViewPager;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import com.lillicoder.lib.uiwidgets.R;
+import com.lillicoder.lib.uiwidgets.carousel.CarouselIndicatorView;
+import com.lillicoder.lib.uiwidgets.carousel.CarouselView;
+import com.lillicoder.lib.uiwidgets.carousel.RecyclingPagerAdapter;
+
+/**
+ * <p>
+ *     Benchmark scenarios for {@link CarouselView} and {@link CarouselIndicatorView}.
+ * </p>
+ *
+ * <ul>
+ *     <li>{@code CarouselView.inflate}: inflating a carousel and its first layout.</li>
+ *     <li>{@code CarouselView.setPagerAdapter}: setting a {@value #PAGE_COUNT} page adapter,
+ *     which creates the indicators and the first pages, and the following layout.</li>
+ *     <li>{@code CarouselView.swipe}: moving to the next page and the following layout, with
+ *     page views recycled by a {@link RecyclingPagerAdapter}.</li>
+ *     <li>{@code CarouselIndicatorView.inflate}: inflating an indicator and its first layout.</li>
+ *     <li>{@code CarouselIndicatorView.setActive}: toggling an indicator and the following layout.</li>
+ * </ul>
+ *
+ * <p>
+ *     The paging scenarios run on a carousel set as the activity's content, since a
+ *     {@link ViewPager} only creates pages while attached to a window.
+ * </p>
+ */
+public class CarouselBenchmarks {
+
+    public static final String SUITE_NAME = "carousel";
+
+    private static final int PAGE_COUNT = 20;
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+    private static final int INDICATOR_SIZE = 48;
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 50;
+    private static final int SWIPE_ITERATIONS = 200;
+
+    private final Activity mActivity;
+    private final WidgetBenchmark mBenchmark = new WidgetBenchmark(SUITE_NAME);
+
+    /**
+     * Instantiates this suite.
+     * @param activity Visible activity to create and host the carousels in.
+     */
+    public CarouselBenchmarks(Activity activity) {
+        mActivity = activity;
+    }
+
+    /**
+     * Runs every scenario of this suite.
+     * @return Runner holding the results.
+     */
+    public WidgetBenchmark run() {
+        final WidgetBenchmark.PassCounter passes = mBenchmark.getPassCounter();
+
+        mBenchmark.run("CarouselView.inflate", WARMUP_ITERATIONS, ITERATIONS, new WidgetBenchmark.Task() {
+            @Override
+            public void run(int iteration) {
+                CarouselView carousel = new CountingCarouselView(mActivity, passes);
+                WidgetBenchmark.measureAndLayout(carousel, WIDTH, HEIGHT);
+            }
+        });
+
+        final CarouselView adapterCarousel = new CountingCarouselView(mActivity, passes);
+        mActivity.setContentView(adapterCarousel);
+        mBenchmark.run("CarouselView.setPagerAdapter", WARMUP_ITERATIONS, ITERATIONS, new WidgetBenchmark.Task() {
+            @Override
+            public void run(int iteration) {
+                adapterCarousel.setPagerAdapter(new PageAdapter(passes));
+                WidgetBenchmark.measureAndLayout(adapterCarousel, WIDTH, HEIGHT);
+            }
+        });
+
+        final CarouselView swipeCarousel = new CountingCarouselView(mActivity, passes);
+        mActivity.setContentView(swipeCarousel);
+        swipeCarousel.setPagerAdapter(new PageAdapter(passes));
+        WidgetBenchmark.measureAndLayout(swipeCarousel, WIDTH, HEIGHT);
+
+        final ViewPager pager = (ViewPager) swipeCarousel.findViewById(R.id.CarouselView_viewPager);
+        mBenchmark.run("CarouselView.swipe", WARMUP_ITERATIONS, SWIPE_ITERATIONS, new WidgetBenchmark.Task() {
+            @Override
+            public void run(int iteration) {
+                pager.setCurrentItem((pager.getCurrentItem() + 1) % PAGE_COUNT, false);
+                WidgetBenchmark.measureAndLayout(swipeCarousel, WIDTH, HEIGHT);
+            }
+        });
+
+        mBenchmark.run("CarouselIndicatorView.inflate", WARMUP_ITERATIONS, ITERATIONS, new WidgetBenchmark.Task() {
+            @Override
+            public void run(int iteration) {
+                CarouselIndicatorView indicator = new CountingIndicatorView(mActivity, passes);
+                WidgetBenchmark.measureAndLayout(indicator, INDICATOR_SIZE, INDICATOR_SIZE);
+            }
+        });
+
+        final CarouselIndicatorView indicator = new CountingIndicatorView(mActivity, passes);
+        WidgetBenchmark.measureAndLayout(indicator, INDICATOR_SIZE, INDICATOR_SIZE);
+        mBenchmark.run("CarouselIndicatorView.setActive", WARMUP_ITERATIONS, ITERATIONS, new WidgetBenchmark.Task() {
+            @Override
+            public void run(int iteration) {
+                indicator.setActive(iteration % 2 == 0);
+                WidgetBenchmark.measureAndLayout(indicator, INDICATOR_SIZE, INDICATOR_SIZE);
+            }
+        });
+
+        return mBenchmark;
+    }
+
+    /**
+     * {@link CarouselView} that reports its measure and layout passes.
+     */
+    private static class CountingCarouselView extends CarouselView {
+
+        private final WidgetBenchmark.PassCounter mPasses;
+
+        CountingCarouselView(Context context, WidgetBenchmark.PassCounter passes) {
+            super(context);
+            mPasses = passes;
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mPasses.onMeasure();
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+            mPasses.onLayout();
+            super.onLayout(changed, left, top, right, bottom);
+        }
+
+    }
+
+    /**
+     * {@link CarouselIndicatorView} that reports its measure and layout passes.
+     */
+    private static class CountingIndicatorView extends CarouselIndicatorView {
+
+        private final WidgetBenchmark.PassCounter mPasses;
+
+        CountingIndicatorView(Context context, WidgetBenchmark.PassCounter passes) {
+            super(context);
+            mPasses = passes;
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mPasses.onMeasure();
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+            mPasses.onLayout();
+            super.onLayout(changed, left, top, right, bottom);
+        }
+
+    }
+
+    /**
+     * Page that shows its position and reports its measure and layout passes.
+     */
+    private static class CountingPage extends FrameLayout {
+
+        private final WidgetBenchmark.PassCounter mPasses;
+        private final TextView mLabel;
+
+        CountingPage(Context context, WidgetBenchmark.PassCounter passes) {
+            super(context);
+            mPasses = passes;
+
+            mLabel = new TextView(context);
+            addView(mLabel);
+        }
+
+        void bind(int position) {
+            mLabel.setText(String.valueOf(position));
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mPasses.onMeasure();
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+            mPasses.onLayout();
+            super.onLayout(changed, left, top, right, bottom);
+        }
+
+    }
+
+    /**
+     * {@link RecyclingPagerAdapter} over {@value #PAGE_COUNT} {@link CountingPage}s.
+     */
+    private static class PageAdapter extends RecyclingPagerAdapter {
+
+        private final WidgetBenchmark.PassCounter mPasses;
+
+        PageAdapter(WidgetBenchmark.PassCounter passes) {
+            mPasses = passes;
+        }
+
+        @Override
+        public int getCount() {
+            return PAGE_COUNT;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup container) {
+            CountingPage page = (CountingPage) convertView;
+            if (page == null) {
+                page = new CountingPage(container.getContext(), mPasses);
+            }
+
+            page.bind(position);
+            return page;
+        }
+
+    }
+
+}
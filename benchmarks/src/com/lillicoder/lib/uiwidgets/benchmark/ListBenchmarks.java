@@ -0,0 +1,231 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.benchmark;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ListView;
+import android.widget.TextView;
+import com.lillicoder.lib.uiwidgets.list.BaseListItemView;
+import com.lillicoder.lib.uiwidgets.list.IndexableList;
+import com.lillicoder.lib.uiwidgets.widget.IndexableListAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *     Benchmark scenarios for {@link BaseListItemView} and {@link IndexableListAdapter}.
+ * </p>
+ *
+ * <ul>
+ *     <li>{@code BaseListItemView.inflate}: inflating a row and its first layout.</li>
+ *     <li>{@code IndexableListAdapter.construct.<items>}: constructing an adapter over
+ *     {@value #SECTION_COUNT} sections holding the given number of items.</li>
+ *     <li>{@code IndexableListAdapter.constructWithItemIndex.<items>}: the same, with the
+ *     item index enabled.</li>
+ *     <li>{@code IndexableListAdapter.scroll}: jumping a {@link ListView} over the flat list
+ *     adapter by a screen of rows and the following layout, which binds a screen of recycled
+ *     {@link BaseListItemView} rows.</li>
+ * </ul>
+ */
+public class ListBenchmarks {
+
+    public static final String SUITE_NAME = "list";
+
+    private static final int SECTION_COUNT = 26;
+    private static final int[] ITEM_COUNTS = { 1000, 10000, 100000 };
+    private static final int SCROLL_ITEM_COUNT = 10000;
+    private static final int SCROLL_STEP = 12;
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+    private static final int ROW_HEIGHT = 72;
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 50;
+    private static final int CONSTRUCT_ITERATIONS = 20;
+    private static final int SCROLL_ITERATIONS = 200;
+
+    private final Context mContext;
+    private final WidgetBenchmark mBenchmark = new WidgetBenchmark(SUITE_NAME);
+
+    /**
+     * Instantiates this suite.
+     * @param context Context to create views with.
+     */
+    public ListBenchmarks(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Runs every scenario of this suite.
+     * @return Runner holding the results.
+     */
+    public WidgetBenchmark run() {
+        final WidgetBenchmark.PassCounter passes = mBenchmark.getPassCounter();
+
+        mBenchmark.run("BaseListItemView.inflate", WARMUP_ITERATIONS, ITERATIONS, new WidgetBenchmark.Task() {
+            @Override
+            public void run(int iteration) {
+                BaseListItemView row = new CountingItemView(mContext, passes);
+                WidgetBenchmark.measureAndLayout(row, WIDTH, ROW_HEIGHT);
+            }
+        });
+
+        for (int itemCount : ITEM_COUNTS) {
+            final List<IndexableList<String, String>> sections = createSections(itemCount);
+
+            mBenchmark.run("IndexableListAdapter.construct." + itemCount,
+                           WARMUP_ITERATIONS,
+                           CONSTRUCT_ITERATIONS,
+                           new WidgetBenchmark.Task() {
+                @Override
+                public void run(int iteration) {
+                    new ItemAdapter(sections, passes);
+                }
+            });
+
+            mBenchmark.run("IndexableListAdapter.constructWithItemIndex." + itemCount,
+                           WARMUP_ITERATIONS,
+                           CONSTRUCT_ITERATIONS,
+                           new WidgetBenchmark.Task() {
+                @Override
+                public void run(int iteration) {
+                    new ItemAdapter(sections, passes).setItemIndexEnabled(true);
+                }
+            });
+        }
+
+        ItemAdapter adapter = new ItemAdapter(createSections(SCROLL_ITEM_COUNT), passes);
+        adapter.expandAll();
+
+        final ListView listView = new ListView(mContext);
+        listView.setAdapter(adapter.getFlatListAdapter());
+        WidgetBenchmark.measureAndLayout(listView, WIDTH, HEIGHT);
+
+        final int rowCount = adapter.getFlatListAdapter().getCount();
+        mBenchmark.run("IndexableListAdapter.scroll", WARMUP_ITERATIONS, SCROLL_ITERATIONS, new WidgetBenchmark.Task() {
+            @Override
+            public void run(int iteration) {
+                listView.setSelection((iteration * SCROLL_STEP) % rowCount);
+                WidgetBenchmark.measureAndLayout(listView, WIDTH, HEIGHT);
+            }
+        });
+
+        return mBenchmark;
+    }
+
+    /**
+     * Creates {@value #SECTION_COUNT} sections holding the given number of items in total.
+     * @param itemCount Total number of items.
+     * @return Sections keyed by letter.
+     */
+    private static List<IndexableList<String, String>> createSections(int itemCount) {
+        List<IndexableList<String, String>> sections = new ArrayList<IndexableList<String, String>>(SECTION_COUNT);
+        for (int section = 0; section < SECTION_COUNT; section++) {
+            String key = String.valueOf((char) ('A' + section));
+            int size = itemCount / SECTION_COUNT + (section < itemCount % SECTION_COUNT ? 1 : 0);
+
+            IndexableList<String, String> list = new IndexableList<String, String>(key, key, size);
+            for (int item = 0; item < size; item++) {
+                list.add(key + item);
+            }
+
+            sections.add(list);
+        }
+
+        return sections;
+    }
+
+    /**
+     * {@link BaseListItemView} showing one line of text that reports its measure and layout passes.
+     */
+    private static class CountingItemView extends BaseListItemView {
+
+        private final WidgetBenchmark.PassCounter mPasses;
+        private final TextView mText;
+
+        CountingItemView(Context context, WidgetBenchmark.PassCounter passes) {
+            super(context);
+            mPasses = passes;
+            mText = (TextView) findViewById(android.R.id.text1);
+        }
+
+        @Override
+        public int getLayoutResource() {
+            return android.R.layout.simple_list_item_1;
+        }
+
+        void bind(CharSequence text) {
+            mText.setText(text);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mPasses.onMeasure();
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+            mPasses.onLayout();
+            super.onLayout(changed, left, top, right, bottom);
+        }
+
+    }
+
+    /**
+     * {@link IndexableListAdapter} that binds headers and items to {@link CountingItemView}s.
+     */
+    private static class ItemAdapter extends IndexableListAdapter<String, String> {
+
+        private final WidgetBenchmark.PassCounter mPasses;
+
+        ItemAdapter(List<IndexableList<String, String>> sections, WidgetBenchmark.PassCounter passes) {
+            super(sections);
+            mPasses = passes;
+        }
+
+        @Override
+        public View getGroupView(int groupPosition, boolean isExpanded, View convertView, ViewGroup parent) {
+            return bind(getGroup(groupPosition).getIndexLabel(), convertView, parent);
+        }
+
+        @Override
+        public View getChildView(int groupPosition,
+                                 int childPosition,
+                                 boolean isLastChild,
+                                 View convertView,
+                                 ViewGroup parent) {
+            return bind(getChild(groupPosition, childPosition), convertView, parent);
+        }
+
+        private View bind(CharSequence text, View convertView, ViewGroup parent) {
+            CountingItemView row = (CountingItemView) convertView;
+            if (row == null) {
+                row = new CountingItemView(parent.getContext(), mPasses);
+            }
+
+            row.bind(text);
+            return row;
+        }
+
+    }
+
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.benchmark;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentActivity;
+import android.support.v4.view.ViewPager;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TabHost;
+import android.widget.TabHost.TabSpec;
+import android.widget.TabWidget;
+import android.widget.TextView;
+import com.lillicoder.lib.uiwidgets.tabs.FragmentTabsAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *     Benchmark scenarios for {@link FragmentTabsAdapter}.
+ * </p>
+ *
+ * <ul>
+ *     <li>{@code FragmentTabsAdapter.addTabs}: constructing an adapter, adding {@value #TAB_COUNT}
+ *     tabs with {@link FragmentTabsAdapter#addTabs(List, List, List)} and the first layout,
+ *     which instantiates the first tabs' fragments.</li>
+ *     <li>{@code FragmentTabsAdapter.addTab}: the same, adding the tabs one at a time.</li>
+ *     <li>{@code FragmentTabsAdapter.switchTab}: moving the pager to the next tab and the
+ *     following layout.</li>
+ * </ul>
+ *
+ * <p>
+ *     Measure and layout passes are counted on the tab host, so they include every pass
+ *     the tab widget, the pager and the tab fragments cause.
+ * </p>
+ */
+public class TabsBenchmarks {
+
+    public static final String SUITE_NAME = "tabs";
+
+    private static final int TAB_COUNT = 8;
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 50;
+    private static final int SWITCH_ITERATIONS = 200;
+
+    /**
+     * First pager ID. Every hierarchy gets its own pager ID so fragments left behind by
+     * earlier iterations are never re-attached to it.
+     */
+    private static final int FIRST_PAGER_ID = 0x00f00000;
+
+    private final FragmentActivity mActivity;
+    private final WidgetBenchmark mBenchmark = new WidgetBenchmark(SUITE_NAME);
+
+    private int mNextPagerId = FIRST_PAGER_ID;
+
+    /**
+     * Instantiates this suite.
+     * @param activity Visible activity to host the tabs in.
+     */
+    public TabsBenchmarks(FragmentActivity activity) {
+        mActivity = activity;
+    }
+
+    /**
+     * Runs every scenario of this suite.
+     * @return Runner holding the results.
+     */
+    public WidgetBenchmark run() {
+        mBenchmark.run("FragmentTabsAdapter.addTabs", WARMUP_ITERATIONS, ITERATIONS, new WidgetBenchmark.Task() {
+            @Override
+            public void run(int iteration) {
+                TabHost tabHost = createTabHost();
+                FragmentTabsAdapter adapter = createAdapter(tabHost);
+
+                List<TabSpec> tabSpecs = new ArrayList<TabSpec>(TAB_COUNT);
+                List<Class<?>> classes = new ArrayList<Class<?>>(TAB_COUNT);
+                for (int tab = 0; tab < TAB_COUNT; tab++) {
+                    tabSpecs.add(createTabSpec(tabHost, tab));
+                    classes.add(ContentFragment.class);
+                }
+
+                adapter.addTabs(tabSpecs, classes, null);
+                WidgetBenchmark.measureAndLayout(tabHost, WIDTH, HEIGHT);
+                adapter.release();
+            }
+        });
+
+        mBenchmark.run("FragmentTabsAdapter.addTab", WARMUP_ITERATIONS, ITERATIONS, new WidgetBenchmark.Task() {
+            @Override
+            public void run(int iteration) {
+                TabHost tabHost = createTabHost();
+                FragmentTabsAdapter adapter = createAdapter(tabHost);
+
+                for (int tab = 0; tab < TAB_COUNT; tab++) {
+                    adapter.addTab(createTabSpec(tabHost, tab), ContentFragment.class, null);
+                }
+
+                WidgetBenchmark.measureAndLayout(tabHost, WIDTH, HEIGHT);
+                adapter.release();
+            }
+        });
+
+        final TabHost tabHost = createTabHost();
+        FragmentTabsAdapter adapter = createAdapter(tabHost);
+        for (int tab = 0; tab < TAB_COUNT; tab++) {
+            adapter.addTab(createTabSpec(tabHost, tab), ContentFragment.class, null);
+        }
+        WidgetBenchmark.measureAndLayout(tabHost, WIDTH, HEIGHT);
+
+        final ViewPager pager = (ViewPager) tabHost.findViewById(mNextPagerId - 1);
+        mBenchmark.run("FragmentTabsAdapter.switchTab", WARMUP_ITERATIONS, SWITCH_ITERATIONS, new WidgetBenchmark.Task() {
+            @Override
+            public void run(int iteration) {
+                pager.setCurrentItem((pager.getCurrentItem() + 1) % TAB_COUNT, false);
+                WidgetBenchmark.measureAndLayout(tabHost, WIDTH, HEIGHT);
+            }
+        });
+        adapter.release();
+
+        return mBenchmark;
+    }
+
+    /**
+     * Creates a tab host holding a tab widget and a pager, and makes it the activity's content.
+     * @return Tab host, set up and empty.
+     */
+    private TabHost createTabHost() {
+        TabHost tabHost = new CountingTabHost(mActivity, mBenchmark.getPassCounter());
+
+        LinearLayout content = new LinearLayout(mActivity);
+        content.setOrientation(LinearLayout.VERTICAL);
+
+        TabWidget tabWidget = new TabWidget(mActivity);
+        tabWidget.setId(android.R.id.tabs);
+        content.addView(tabWidget,
+                        new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                                                      ViewGroup.LayoutParams.WRAP_CONTENT));
+
+        FrameLayout tabContent = new FrameLayout(mActivity);
+        tabContent.setId(android.R.id.tabcontent);
+        content.addView(tabContent, new LinearLayout.LayoutParams(0, 0));
+
+        ViewPager pager = new ViewPager(mActivity);
+        pager.setId(mNextPagerId++);
+        content.addView(pager, new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 0, 1));
+
+        tabHost.addView(content);
+        tabHost.setup();
+
+        // Fragments can only be added to containers in the activity's hierarchy
+        mActivity.setContentView(tabHost);
+        return tabHost;
+    }
+
+    /**
+     * Creates an adapter over the given tab host and its pager.
+     * @param tabHost Tab host created by {@link #createTabHost()}.
+     * @return Adapter without tabs.
+     */
+    private FragmentTabsAdapter createAdapter(TabHost tabHost) {
+        ViewPager pager = (ViewPager) tabHost.findViewById(mNextPagerId - 1);
+        return new FragmentTabsAdapter(mActivity, tabHost, pager);
+    }
+
+    /**
+     * Creates the tab spec of the tab at the given position.
+     * @param tabHost Tab host to create the spec with.
+     * @param tab Position of the tab.
+     * @return Tab spec with a text indicator.
+     */
+    private static TabSpec createTabSpec(TabHost tabHost, int tab) {
+        String tag = "tab" + tab;
+        return tabHost.newTabSpec(tag).setIndicator(tag);
+    }
+
+    /**
+     * Tab content fragment showing its tab's tag.
+     */
+    public static class ContentFragment extends Fragment {
+
+        @Override
+        public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+            TextView text = new TextView(inflater.getContext());
+            text.setText(getTag());
+            return text;
+        }
+
+    }
+
+    /**
+     * {@link TabHost} that reports its measure and layout passes.
+     */
+    private static class CountingTabHost extends TabHost {
+
+        private final WidgetBenchmark.PassCounter mPasses;
+
+        CountingTabHost(Context context, WidgetBenchmark.PassCounter passes) {
+            super(context, null);
+            mPasses = passes;
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            mPasses.onMeasure();
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+            mPasses.onLayout();
+            super.onLayout(changed, left, top, right, bottom);
+        }
+
+    }
+
+}
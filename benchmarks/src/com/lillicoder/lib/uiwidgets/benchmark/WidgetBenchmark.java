@@ -0,0 +1,466 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.benchmark;
+
+import android.view.View;
+import com.lillicoder.lib.uiwidgets.util.Histogram;
+import junit.framework.Assert;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ *     Runner for widget macro-benchmarks that produces a machine-readable report.
+ * </p>
+ *
+ * <p>
+ *     Each scenario is a {@link Task} run for a number of warm-up and measured iterations.
+ *     Per-iteration wall time is recorded in a {@link Histogram}, along with the number of
+ *     bytes the running thread allocated per iteration and the number of measure and layout
+ *     passes reported to the runner's {@link PassCounter}. Allocations are read from the JVM's
+ *     {@link com.sun.management.ThreadMXBean}, so the runner is meant for the JVM under Robolectric.
+ * </p>
+ *
+ * <p>
+ *     A report written by {@link #writeReport(File)} from a reference run can be kept as a
+ *     baseline. {@link #compareToBaseline(JSONObject, double)} lists the scenarios that
+ *     regressed against it. Pass counts do not depend on the machine and must not grow at all,
+ *     median times and mean allocations may grow by the given tolerance. Medians are compared
+ *     rather than means so that an occasional garbage collection pause is not a regression.
+ * </p>
+ */
+public class WidgetBenchmark {
+
+    private static final String PRECONDITION_NULL_TASK =
+        "Cannot run a benchmark without a task.";
+
+    private static final String PRECONDITION_INVALID_ITERATIONS =
+        "Benchmark iterations must be positive and warm-up iterations must not be negative.";
+
+    private static final String ERROR_CREATE_REPORT_DIRECTORY =
+        "Cannot create benchmark report directory %s.";
+
+    private static final String ERROR_SERIALIZE_RESULTS =
+        "Cannot serialize benchmark results.";
+
+    private static final String ERROR_PARSE_REPORT =
+        "Cannot parse benchmark report %s.";
+
+    private static final String REGRESSION =
+        "%s: %s went from %s to %s.";
+
+    private static final String KEY_SUITE = "suite";
+    private static final String KEY_RESULTS = "results";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_ITERATIONS = "iterations";
+    private static final String KEY_MEAN_NANOS = "meanNanos";
+    private static final String KEY_MEDIAN_NANOS = "medianNanos";
+    private static final String KEY_P50_MICROS = "p50Micros";
+    private static final String KEY_P90_MICROS = "p90Micros";
+    private static final String KEY_P99_MICROS = "p99Micros";
+    private static final String KEY_MAX_MICROS = "maxMicros";
+    private static final String KEY_MEAN_ALLOCATED_BYTES = "meanAllocatedBytes";
+    private static final String KEY_MEAN_MEASURE_PASSES = "meanMeasurePasses";
+    private static final String KEY_MEAN_LAYOUT_PASSES = "meanLayoutPasses";
+
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Bucket bounds, in microseconds, for iteration times.
+     */
+    private static final long[] ITERATION_BOUNDS_MICROS =
+        { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 1000000 };
+
+    /**
+     * Interface describing a single benchmark scenario iteration.
+     */
+    public interface Task {
+
+        /**
+         * Runs one iteration of the scenario.
+         * @param iteration Index of the iteration, warm-up iterations included.
+         */
+        public void run(int iteration);
+
+    }
+
+    /**
+     * Counts measure and layout passes. Views under test report their own passes from
+     * {@link View#onMeasure(int, int)} and {@link View#onLayout(boolean, int, int, int, int)}.
+     */
+    public static class PassCounter {
+
+        private long mMeasures;
+        private long mLayouts;
+
+        /**
+         * Counts one measure pass.
+         */
+        public void onMeasure() {
+            mMeasures++;
+        }
+
+        /**
+         * Counts one layout pass.
+         */
+        public void onLayout() {
+            mLayouts++;
+        }
+
+        private void reset() {
+            mMeasures = 0;
+            mLayouts = 0;
+        }
+
+    }
+
+    /**
+     * Results of a single benchmark scenario.
+     */
+    public static class Result {
+
+        private final String mName;
+        private final int mIterations;
+        private final Histogram mIterationTimes = new Histogram(ITERATION_BOUNDS_MICROS);
+        private final long[] mIterationNanos;
+
+        private long mTotalNanos;
+        private long mTotalAllocatedBytes;
+        private long mTotalMeasures;
+        private long mTotalLayouts;
+
+        Result(String name, int iterations) {
+            mName = name;
+            mIterations = iterations;
+            mIterationNanos = new long[iterations];
+        }
+
+        /**
+         * Gets the name of this scenario.
+         * @return Scenario name.
+         */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Gets the histogram of iteration times, in microseconds.
+         * @return Iteration time histogram.
+         */
+        public Histogram getIterationTimes() {
+            return mIterationTimes;
+        }
+
+        /**
+         * Gets the mean iteration time.
+         * @return Mean iteration time in nanoseconds.
+         */
+        public long getMeanNanos() {
+            return mTotalNanos / mIterations;
+        }
+
+        /**
+         * Gets the median iteration time.
+         * @return Median iteration time in nanoseconds.
+         */
+        public long getMedianNanos() {
+            long[] sorted = mIterationNanos.clone();
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2];
+        }
+
+        /**
+         * Gets the mean number of bytes allocated per iteration.
+         * @return Mean allocated bytes per iteration.
+         */
+        public double getMeanAllocatedBytes() {
+            return (double) mTotalAllocatedBytes / mIterations;
+        }
+
+        /**
+         * Gets the mean number of measure passes per iteration.
+         * @return Mean measure passes per iteration.
+         */
+        public double getMeanMeasurePasses() {
+            return (double) mTotalMeasures / mIterations;
+        }
+
+        /**
+         * Gets the mean number of layout passes per iteration.
+         * @return Mean layout passes per iteration.
+         */
+        public double getMeanLayoutPasses() {
+            return (double) mTotalLayouts / mIterations;
+        }
+
+        /**
+         * Converts this result to JSON.
+         * @return JSON representation of this result.
+         * @throws JSONException If the result cannot be represented as JSON.
+         */
+        public JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put(KEY_NAME, mName);
+            json.put(KEY_ITERATIONS, mIterations);
+            json.put(KEY_MEAN_NANOS, getMeanNanos());
+            json.put(KEY_MEDIAN_NANOS, getMedianNanos());
+            json.put(KEY_P50_MICROS, mIterationTimes.getPercentile(50));
+            json.put(KEY_P90_MICROS, mIterationTimes.getPercentile(90));
+            json.put(KEY_P99_MICROS, mIterationTimes.getPercentile(99));
+            json.put(KEY_MAX_MICROS, mIterationTimes.getMax());
+            json.put(KEY_MEAN_ALLOCATED_BYTES, getMeanAllocatedBytes());
+            json.put(KEY_MEAN_MEASURE_PASSES, getMeanMeasurePasses());
+            json.put(KEY_MEAN_LAYOUT_PASSES, getMeanLayoutPasses());
+            return json;
+        }
+
+    }
+
+    private final String mSuiteName;
+    private final List<Result> mResults = new ArrayList<Result>();
+    private final PassCounter mPassCounter = new PassCounter();
+
+    /**
+     * Instantiates this benchmark runner.
+     * @param suiteName Name of the suite, included in the report.
+     */
+    public WidgetBenchmark(String suiteName) {
+        mSuiteName = suiteName;
+    }
+
+    /**
+     * Gets the name of this suite.
+     * @return Suite name.
+     */
+    public String getSuiteName() {
+        return mSuiteName;
+    }
+
+    /**
+     * Gets the counter that views under test report their measure and layout passes to.
+     * It is reset before every measured iteration.
+     * @return Pass counter of this runner.
+     */
+    public PassCounter getPassCounter() {
+        return mPassCounter;
+    }
+
+    /**
+     * Runs the given scenario and records its result.
+     * @param name Name of the scenario.
+     * @param warmupIterations Number of unmeasured iterations to run first.
+     * @param iterations Number of measured iterations.
+     * @param task Scenario to run.
+     * @return Result of the scenario.
+     */
+    public Result run(String name, int warmupIterations, int iterations, Task task) {
+        Assert.assertTrue(PRECONDITION_NULL_TASK, task != null);
+        Assert.assertTrue(PRECONDITION_INVALID_ITERATIONS, iterations > 0 && warmupIterations >= 0);
+
+        for (int iteration = 0; iteration < warmupIterations; iteration++) {
+            task.run(iteration);
+        }
+
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        Result result = new Result(name, iterations);
+        for (int iteration = warmupIterations; iteration < warmupIterations + iterations; iteration++) {
+            mPassCounter.reset();
+            long allocatedBytes = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+
+            task.run(iteration);
+
+            long elapsed = System.nanoTime() - start;
+            result.mTotalAllocatedBytes += THREADS.getThreadAllocatedBytes(threadId) - allocatedBytes;
+            result.mTotalNanos += elapsed;
+            result.mIterationNanos[iteration - warmupIterations] = elapsed;
+            result.mTotalMeasures += mPassCounter.mMeasures;
+            result.mTotalLayouts += mPassCounter.mLayouts;
+            result.mIterationTimes.record(elapsed / NANOS_PER_MICRO);
+        }
+
+        mResults.add(result);
+        return result;
+    }
+
+    /**
+     * Gets the results recorded so far.
+     * @return Recorded results.
+     */
+    public List<Result> getResults() {
+        return mResults;
+    }
+
+    /**
+     * Converts this suite's results to JSON.
+     * @return JSON representation of this suite.
+     * @throws JSONException If the results cannot be represented as JSON.
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONArray results = new JSONArray();
+        for (Result result : mResults) {
+            results.put(result.toJson());
+        }
+
+        JSONObject json = new JSONObject();
+        json.put(KEY_SUITE, mSuiteName);
+        json.put(KEY_RESULTS, results);
+        return json;
+    }
+
+    /**
+     * Compares this suite's results with a baseline report of the same suite.
+     * Scenarios missing from the baseline are not compared.
+     * @param baseline Baseline report, as written by {@link #writeReport(File)}.
+     * @param tolerance Allowed relative growth of times and allocations, e.g. {@code 0.1} for 10%.
+     * @return Description of each regression, empty if nothing regressed.
+     * @throws JSONException If the baseline is not a benchmark report.
+     */
+    public List<String> compareToBaseline(JSONObject baseline, double tolerance) throws JSONException {
+        JSONArray baselineResults = baseline.getJSONArray(KEY_RESULTS);
+        List<String> regressions = new ArrayList<String>();
+
+        for (Result result : mResults) {
+            JSONObject expected = null;
+            for (int index = 0; index < baselineResults.length() && expected == null; index++) {
+                JSONObject candidate = baselineResults.getJSONObject(index);
+                if (result.getName().equals(candidate.getString(KEY_NAME))) {
+                    expected = candidate;
+                }
+            }
+
+            if (expected == null) {
+                continue;
+            }
+
+            checkRegression(regressions, result.getName(), KEY_MEAN_MEASURE_PASSES,
+                            expected.getDouble(KEY_MEAN_MEASURE_PASSES), result.getMeanMeasurePasses(), 0);
+            checkRegression(regressions, result.getName(), KEY_MEAN_LAYOUT_PASSES,
+                            expected.getDouble(KEY_MEAN_LAYOUT_PASSES), result.getMeanLayoutPasses(), 0);
+            checkRegression(regressions, result.getName(), KEY_MEAN_ALLOCATED_BYTES,
+                            expected.getDouble(KEY_MEAN_ALLOCATED_BYTES), result.getMeanAllocatedBytes(), tolerance);
+            checkRegression(regressions, result.getName(), KEY_MEDIAN_NANOS,
+                            expected.getDouble(KEY_MEDIAN_NANOS), result.getMedianNanos(), tolerance);
+        }
+
+        return regressions;
+    }
+
+    /**
+     * Writes this suite's results as JSON to the given file, creating parent directories as needed.
+     * @param file File to write the report to.
+     * @throws IOException If the report cannot be written.
+     */
+    public void writeReport(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException(String.format(ERROR_CREATE_REPORT_DIRECTORY, parent));
+        }
+
+        String report;
+        try {
+            report = toJson().toString(2);
+        } catch (JSONException e) {
+            throw new IOException(ERROR_SERIALIZE_RESULTS, e);
+        }
+
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(report);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads a report written by {@link #writeReport(File)}.
+     * @param file File to read the report from.
+     * @return Report JSON.
+     * @throws IOException If the report cannot be read or parsed.
+     */
+    public static JSONObject readReport(File file) throws IOException {
+        StringBuilder report = new StringBuilder();
+        char[] buffer = new char[4096];
+
+        Reader reader = new FileReader(file);
+        try {
+            for (int read = reader.read(buffer); read >= 0; read = reader.read(buffer)) {
+                report.append(buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+
+        try {
+            return new JSONObject(report.toString());
+        } catch (JSONException e) {
+            throw new IOException(String.format(ERROR_PARSE_REPORT, file), e);
+        }
+    }
+
+    /**
+     * Runs a full measure and layout pass on the given view at the given size.
+     * @param view View to measure and lay out.
+     * @param width Exact width in pixels.
+     * @param height Exact height in pixels.
+     */
+    public static void measureAndLayout(View view, int width, int height) {
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY);
+        int heightSpec = View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY);
+        view.measure(widthSpec, heightSpec);
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+    /**
+     * Adds a regression to the given list if the actual value grew past the expected value
+     * by more than the given tolerance.
+     * @param regressions Regressions found so far.
+     * @param name Scenario name.
+     * @param metric Name of the compared metric.
+     * @param expected Baseline value.
+     * @param actual Measured value.
+     * @param tolerance Allowed relative growth.
+     */
+    private static void checkRegression(List<String> regressions,
+                                        String name,
+                                        String metric,
+                                        double expected,
+                                        double actual,
+                                        double tolerance) {
+        if (actual > expected * (1 + tolerance)) {
+            regressions.add(String.format(REGRESSION, name, metric, expected, actual));
+        }
+    }
+
+}
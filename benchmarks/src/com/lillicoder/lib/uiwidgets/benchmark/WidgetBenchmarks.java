@@ -0,0 +1,104 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.benchmark;
+
+import android.support.v4.app.FragmentActivity;
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *     Entry point that runs every widget benchmark suite, writes one report per suite and
+ *     compares each report with its recorded baseline.
+ * </p>
+ *
+ * <p>
+ *     The suites only need a visible {@link FragmentActivity}. {@code WidgetBenchmarksTest}
+ *     runs them under Robolectric on the JVM, see {@code benchmarks/build.gradle}:
+ * </p>
+ *
+ * <pre>
+ * cd benchmarks
+ * gradle benchmark -Pbaselines=path/to/baselines
+ * </pre>
+ *
+ * <p>
+ *     Reports are named after their suite, e.g. {@code carousel.json}. A baseline is recorded
+ *     by copying the reports of a reference run into the baseline directory. Times and
+ *     allocations are only comparable between runs on the same kind of machine, so baselines
+ *     should be recorded on the machine that runs the comparison. Times also need an otherwise
+ *     idle machine, on a busy one raise the tolerance with {@code -Ptolerance}.
+ * </p>
+ */
+public class WidgetBenchmarks {
+
+    /**
+     * Default allowed relative growth of times and allocations over the baseline.
+     */
+    public static final double DEFAULT_TOLERANCE = 0.2;
+
+    private static final String REPORT_EXTENSION = ".json";
+
+    private static final String ERROR_READ_BASELINE =
+        "Cannot compare with baseline %s.";
+
+    private WidgetBenchmarks() {}
+
+    /**
+     * Runs every suite, writes their reports and compares them with their baselines.
+     * Suites without a baseline are only reported.
+     * @param activity Visible activity to create and host views in.
+     * @param reportDirectory Directory to write the reports to.
+     * @param baselineDirectory Directory holding recorded baseline reports, may be {@code null}.
+     * @param tolerance Allowed relative growth of times and allocations, e.g. {@code 0.1} for 10%.
+     * @return Description of each regression, empty if nothing regressed.
+     * @throws IOException If a report cannot be written or a baseline cannot be read.
+     */
+    public static List<String> runAll(FragmentActivity activity,
+                                      File reportDirectory,
+                                      File baselineDirectory,
+                                      double tolerance) throws IOException {
+        List<WidgetBenchmark> suites = new ArrayList<WidgetBenchmark>();
+        suites.add(new CarouselBenchmarks(activity).run());
+        suites.add(new ListBenchmarks(activity).run());
+        suites.add(new TabsBenchmarks(activity).run());
+
+        List<String> regressions = new ArrayList<String>();
+        for (WidgetBenchmark suite : suites) {
+            String fileName = suite.getSuiteName() + REPORT_EXTENSION;
+            suite.writeReport(new File(reportDirectory, fileName));
+
+            File baseline = baselineDirectory == null ? null : new File(baselineDirectory, fileName);
+            if (baseline == null || !baseline.exists()) {
+                continue;
+            }
+
+            try {
+                regressions.addAll(suite.compareToBaseline(WidgetBenchmark.readReport(baseline), tolerance));
+            } catch (JSONException e) {
+                throw new IOException(String.format(ERROR_READ_BASELINE, baseline), e);
+            }
+        }
+
+        return regressions;
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.benchmark;
+
+import android.support.v4.app.FragmentActivity;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs every widget benchmark suite under Robolectric, writes the reports to the directory
+ * given by the {@code benchmark.reportDir} system property and fails if any scenario
+ * regressed against the baselines in {@code benchmark.baselineDir}, if set, by more than
+ * {@code benchmark.tolerance}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 17, manifest = "../AndroidManifest.xml")
+public class WidgetBenchmarksTest {
+
+    private static final String PROPERTY_REPORT_DIR = "benchmark.reportDir";
+    private static final String PROPERTY_BASELINE_DIR = "benchmark.baselineDir";
+    private static final String PROPERTY_TOLERANCE = "benchmark.tolerance";
+
+    private static final String DEFAULT_REPORT_DIR = "build/benchmarks";
+
+    @Test
+    public void runAll() throws Exception {
+        FragmentActivity activity = Robolectric.buildActivity(FragmentActivity.class).create().start().resume().visible().get();
+
+        // Posted work such as fragment commits and traversals would otherwise run synchronously
+        // and re-enter the pager, the benchmarks measure and lay out views themselves
+        ShadowLooper.pauseMainLooper();
+
+        File reportDirectory = new File(System.getProperty(PROPERTY_REPORT_DIR, DEFAULT_REPORT_DIR));
+        String baselineDirectory = System.getProperty(PROPERTY_BASELINE_DIR);
+        String tolerance = System.getProperty(PROPERTY_TOLERANCE);
+
+        List<String> regressions = WidgetBenchmarks.runAll(activity,
+                                                           reportDirectory,
+                                                           baselineDirectory != null ? new File(baselineDirectory) : null,
+                                                           tolerance != null ?
+                                                               Double.parseDouble(tolerance) :
+                                                               WidgetBenchmarks.DEFAULT_TOLERANCE);
+        assertTrue(regressions.toString(), regressions.isEmpty());
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.carousel;
+
+import android.view.View;
+
+/**
+ * <p>
+ *     Transforms the visible pages of a {@link CarouselView} as it scrolls.
+ * </p>
+ *
+ * <p>
+ *     Implementations should only change render properties of the page and its children,
+ *     such as translation, alpha, scale and rotation. These are applied by the renderer
+ *     without invalidating the page's content. Changing layout or content from a transformer
+ *     costs frames.
+ * </p>
+ *
+ * <p>
+ *     While the carousel is dragged, the view returned by {@link #getLayerTarget(View)} is
+ *     drawn from a hardware layer. A layer only helps if the transform leaves the layered
+ *     view's content unchanged: a page whose child moves has to redraw its layer every frame.
+ * </p>
+ */
+public interface CarouselPageTransformer {
+
+	/**
+	 * Applies the transform for the given page position.
+	 * @param page Visible page to transform.
+	 * @param position Position of the page relative to the current scroll position, in
+	 * 				   page widths. {@code 0} is the centered page, {@code -1} is one page
+	 * 				   to the left and {@code 1} is one page to the right.
+	 */
+	public void transformPage(View page, float position);
+
+	/**
+	 * Gets the view to draw from a hardware layer while the carousel is dragged. This should
+	 * be the outermost view whose content the transform leaves unchanged, i.e. one that is only
+	 * moved, faded, scaled or rotated as a whole.
+	 * @param page Visible page.
+	 * @return The page, one of its children, or {@code null} to layer nothing.
+	 */
+	public View getLayerTarget(View page);
+
+	/**
+	 * Clears every property set by {@link #transformPage(View, float)}. Called when a
+	 * transformed page scrolls out of view or is removed from the carousel, so that
+	 * recycled pages come back untransformed.
+	 * @param page Page to reset.
+	 */
+	public void resetPage(View page);
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.carousel;
+
+import android.database.DataSetObservable;
+import android.database.DataSetObserver;
+import android.support.v4.view.PagerAdapter;
+
+/**
+ * <p>
+ *     {@link PagerAdapter} base for use with {@link CarouselView}.
+ * </p>
+ *
+ * <p>
+ *     The support library keeps {@link PagerAdapter}'s observer registration
+ *     package-private, so views other than {@link android.support.v4.view.ViewPager}
+ *     cannot listen for data changes. This adapter republishes
+ *     {@link #notifyDataSetChanged()} to its own set of observers, which lets
+ *     {@link CarouselView} keep its indicators in sync with the adapter's data.
+ * </p>
+ */
+public abstract class CarouselPagerAdapter extends PagerAdapter {
+
+	private final DataSetObservable mCarouselObservable = new DataSetObservable();
+
+	@Override
+	public void notifyDataSetChanged() {
+		// Let the pager update first so observers see its settled current item
+		super.notifyDataSetChanged();
+		mCarouselObservable.notifyChanged();
+	}
+
+	/**
+	 * Called by {@link CarouselView} when the system asks for memory to be released.
+	 * Once the UI is hidden the carousel also destroys its pages through
+	 * {@link #destroyItem(android.view.ViewGroup, int, Object)} until it is drawn again.
+	 * Adapters should release other things they can recreate, such as cached bitmaps or
+	 * pooled views.
+	 * @param level Trim level, one of the {@link android.content.ComponentCallbacks2}
+	 * 				{@code TRIM_MEMORY_*} constants.
+	 * @return Estimated number of bytes released, {@code 0} by default.
+	 */
+	public long onTrimMemory(int level) {
+		return 0;
+	}
+
+	/**
+	 * Registers an observer that is notified after this adapter's data changes.
+	 * @param observer {@link DataSetObserver} to register.
+	 */
+	public void registerCarouselObserver(DataSetObserver observer) {
+		mCarouselObservable.registerObserver(observer);
+	}
+
+	/**
+	 * Unregisters an observer previously registered with
+	 * {@link #registerCarouselObserver(DataSetObserver)}.
+	 * @param observer {@link DataSetObserver} to unregister.
+	 */
+	public void unregisterCarouselObserver(DataSetObserver observer) {
+		mCarouselObservable.unregisterObserver(observer);
+	}
+
+}
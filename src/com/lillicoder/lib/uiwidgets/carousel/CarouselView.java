@@ -16,27 +16,58 @@
 
 package com.lillicoder.lib.uiwidgets.carousel;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.database.DataSetObserver;
+import android.os.Build;
 import android.support.v4.view.PagerAdapter;
+import android.support.v4.view.ViewCompat;
 import android.support.v4.view.ViewPager;
 import android.support.v4.view.ViewPager.OnPageChangeListener;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup.OnHierarchyChangeListener;
+import android.view.ViewTreeObserver.OnPreDrawListener;
 import android.widget.FrameLayout;
 import android.widget.LinearLayout;
 
 import com.lillicoder.lib.uiwidgets.R;
+import com.lillicoder.lib.uiwidgets.util.PagingMonitor;
+import com.lillicoder.lib.uiwidgets.util.PagingMonitor.OnPagingMetricsListener;
+import com.lillicoder.lib.uiwidgets.util.TrimCoordinator;
+import com.lillicoder.lib.uiwidgets.util.Trimmable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * View that displays a page-able set of items with item position indicators.
+ * While attached to a window the carousel is registered with the {@link TrimCoordinator}.
+ * Once the UI is hidden it releases its pages until it is drawn again, and it lets its
+ * {@link CarouselPagerAdapter} release memory when the system runs low.
+ * Pages can be transformed as they scroll with a {@link CarouselPageTransformer}.
  */
-public class CarouselView extends FrameLayout {
+public class CarouselView extends FrameLayout implements Trimmable {
+	
+	private static final int NO_ACTIVE_INDICATOR = -1;
 	
 	private PagerAdapter mPagerAdapter;
+	private int mActiveIndicatorPosition = NO_ACTIVE_INDICATOR;
 	
 	private LinearLayout mIndicatorsContainer;
 	private ViewPager mViewPager;
 	
+	private PagingMonitor mPagingMonitor;
+	
+	private CarouselPageTransformer mPageTransformer;
+	private final ArrayList<View> mTransformedPages = new ArrayList<View>();
+	private final HashMap<View, View> mLayeredViews = new HashMap<View, View>();
+	private boolean mIsScrolling;
+	
+	private boolean mArePagesReleased;
+	private int mReleasedCurrentItem;
+	
 	/**
 	 * {@link OnPageChangeListener} that handles setting the correct carousel indicator
 	 * colors as views are paged.
@@ -44,42 +75,81 @@ public class CarouselView extends FrameLayout {
 	private OnPageChangeListener mIndicatorChangeListener = new OnPageChangeListener() {
 		@Override
 		public void onPageSelected(int position) {
-			int currentPosition = position;
-			int itemCount = mPagerAdapter.getCount();
-			
-			// If we are currently looking at the first item, 
-			// we should loop to the last item
-			int previousPosition;
-			if (currentPosition == 0)
-				previousPosition = (itemCount - 1);
-			else
-				previousPosition = currentPosition - 1;
+			// Released pagers have no pages to select, keep the last current item
+			if (!mArePagesReleased)
+				setActiveIndicator(position);
 			
-			// If we are currently looking at the last item, 
-			// we should should loop to the first item.
-			int nextPosition;
-			if (currentPosition == itemCount - 1)
-				nextPosition = 0;
-			else
-				nextPosition = currentPosition + 1;
+			if (mPagingMonitor != null)
+				mPagingMonitor.onPageSelected(position);
+		}
+		
+		@Override
+		public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {
+			if (mPageTransformer != null)
+				transformVisiblePages();
+		}
+		
+		@Override
+		public void onPageScrollStateChanged(int state) {
+			if (mPagingMonitor != null)
+				mPagingMonitor.onPageScrollStateChanged(state);
 			
-			// Update indicator state
-			CarouselIndicatorView currentIndicator = getIndicator(position);
-			CarouselIndicatorView previousIndicator = getIndicator(previousPosition);
-			CarouselIndicatorView nextIndicator = getIndicator(nextPosition);
-			if (currentIndicator != null)
-				currentIndicator.setActive(true);
-			if (previousIndicator != null)
-				previousIndicator.setActive(false);
-			if (nextIndicator != null)
-				nextIndicator.setActive(false);
+			mIsScrolling = state != ViewPager.SCROLL_STATE_IDLE;
+			if (mPageTransformer != null) {
+				if (mIsScrolling)
+					transformVisiblePages();
+				else
+					clearPageLayers();
+			}
+		}
+	};
+	
+	/**
+	 * {@link OnHierarchyChangeListener} that counts page instantiations while
+	 * paging instrumentation is enabled and resets pages as they are removed.
+	 */
+	private OnHierarchyChangeListener mPageHierarchyListener = new OnHierarchyChangeListener() {
+		@Override
+		public void onChildViewAdded(View parent, View child) {
+			if (mPagingMonitor != null)
+				mPagingMonitor.onPageInstantiated();
 		}
 		
 		@Override
-		public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {}
+		public void onChildViewRemoved(View parent, View child) {
+			// Removed pages may be recycled, hand them back untransformed
+			resetPage(child);
+		}
+	};
+	
+	/**
+	 * {@link OnPreDrawListener} that gives the pager back the pages released while
+	 * the UI was hidden before the carousel is drawn again.
+	 */
+	private OnPreDrawListener mRestorePagesListener = new OnPreDrawListener() {
+		@Override
+		public boolean onPreDraw() {
+			restorePages();
+			
+			// Skip this frame, the next one shows the restored pages
+			return false;
+		}
+	};
+	
+	/**
+	 * {@link DataSetObserver} that keeps the carousel indicators in sync
+	 * with the current adapter's data.
+	 */
+	private DataSetObserver mAdapterObserver = new DataSetObserver() {
+		@Override
+		public void onChanged() {
+			refreshIndicators();
+		}
 		
 		@Override
-		public void onPageScrollStateChanged(int state) {}
+		public void onInvalidated() {
+			refreshIndicators();
+		}
 	};
 	
 	public CarouselView(Context context) {
@@ -100,6 +170,88 @@ public class CarouselView extends FrameLayout {
 		
 		// Attach the page change listener to handle carousel indicators
 		mViewPager.setOnPageChangeListener(mIndicatorChangeListener);
+		mViewPager.setOnHierarchyChangeListener(mPageHierarchyListener);
+	}
+	
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		TrimCoordinator.getInstance(getContext()).register(this);
+		
+		// Changes made while detached were not observed
+		if (mPagerAdapter instanceof CarouselPagerAdapter) {
+			((CarouselPagerAdapter) mPagerAdapter).registerCarouselObserver(mAdapterObserver);
+			refreshIndicators();
+		}
+	}
+	
+	@Override
+	protected void onDetachedFromWindow() {
+		// The restore listener belongs to the window being left
+		restorePages();
+		
+		// Adapters may outlive this view, do not let them hold on to it
+		if (mPagerAdapter instanceof CarouselPagerAdapter)
+			((CarouselPagerAdapter) mPagerAdapter).unregisterCarouselObserver(mAdapterObserver);
+		
+		TrimCoordinator.getInstance(getContext()).unregister(this);
+		super.onDetachedFromWindow();
+	}
+	
+	@Override
+	public long onTrimMemory(int level) {
+		long bytes = 0;
+		if (mPagerAdapter instanceof CarouselPagerAdapter)
+			bytes += ((CarouselPagerAdapter) mPagerAdapter).onTrimMemory(level);
+		
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+			bytes += releasePages();
+		
+		return bytes;
+	}
+	
+	/**
+	 * Has the pager destroy all of its pages until the carousel is drawn again.
+	 * Pages of a {@link RecyclingPagerAdapter} are discarded rather than pooled.
+	 * @return Estimated number of bytes released.
+	 */
+	private long releasePages() {
+		if (mArePagesReleased || mPagerAdapter == null)
+			return 0;
+		
+		long bytes = 0;
+		for (int i = 0; i < mViewPager.getChildCount(); i++) {
+			View page = mViewPager.getChildAt(i);
+			if (!((ViewPager.LayoutParams) page.getLayoutParams()).isDecor)
+				bytes += TrimCoordinator.estimateBitmapBytes(page);
+		}
+		
+		mReleasedCurrentItem = mViewPager.getCurrentItem();
+		mArePagesReleased = true;
+		mViewPager.setAdapter(null);
+		
+		if (mPagerAdapter instanceof RecyclingPagerAdapter)
+			((RecyclingPagerAdapter) mPagerAdapter).clearRecycledViews();
+		
+		getViewTreeObserver().addOnPreDrawListener(mRestorePagesListener);
+		return bytes;
+	}
+	
+	/**
+	 * Gives the pager back the pages released by {@link #releasePages()}, if any.
+	 */
+	private void restorePages() {
+		if (!mArePagesReleased)
+			return;
+		
+		mArePagesReleased = false;
+		getViewTreeObserver().removeOnPreDrawListener(mRestorePagesListener);
+		
+		mViewPager.setAdapter(mPagerAdapter);
+		mViewPager.setCurrentItem(mReleasedCurrentItem, false);
+		
+		// The adapter may have shrunk while released, sync to the item actually restored
+		refreshIndicators();
 	}
 	
 	/**
@@ -113,21 +265,49 @@ public class CarouselView extends FrameLayout {
 	}
 
 	/**
-	 * Populates this carousel with the given number of indicators.
+	 * Adds or removes indicators so that this carousel displays the given number of indicators.
+	 * Existing indicators are kept, only the difference is created or removed.
 	 * @param count Number of item indicators to display.
 	 */
-	private void generateIndicators(int count) {
-		mIndicatorsContainer.removeAllViews();
+	private void syncIndicators(int count) {
+		int currentCount = mIndicatorsContainer.getChildCount();
+		if (count < currentCount) {
+			mIndicatorsContainer.removeViews(count, currentCount - count);
+			
+			// The active indicator may have been removed
+			if (mActiveIndicatorPosition >= count)
+				mActiveIndicatorPosition = NO_ACTIVE_INDICATOR;
+		}
 		
-		for (int i = 0; i < count; i++) {
+		for (int i = currentCount; i < count; i++) {
 			CarouselIndicatorView indicator = new CarouselIndicatorView(getContext());
-			indicator.setActive(i == 0); // We should active the first item by default since the 
-										 // page change listener will not fire until paging occurs
+			indicator.setActive(false);
 			
 			mIndicatorsContainer.addView(indicator);
 		}
 	}
 	
+	/**
+	 * Sets the indicator at the given position as the only active indicator.
+	 * @param position Position of the indicator to activate.
+	 */
+	private void setActiveIndicator(int position) {
+		if (position == mActiveIndicatorPosition)
+			return;
+		
+		CarouselIndicatorView previousIndicator = getIndicator(mActiveIndicatorPosition);
+		if (previousIndicator != null)
+			previousIndicator.setActive(false);
+		
+		CarouselIndicatorView currentIndicator = getIndicator(position);
+		if (currentIndicator != null) {
+			currentIndicator.setActive(true);
+			mActiveIndicatorPosition = position;
+		} else {
+			mActiveIndicatorPosition = NO_ACTIVE_INDICATOR;
+		}
+	}
+	
 	/**
 	 * Gets the {@link CarouselIndicatorView} at the given position.
 	 * @param position Position of the indicator to get.
@@ -138,15 +318,187 @@ public class CarouselView extends FrameLayout {
 		return (CarouselIndicatorView) mIndicatorsContainer.getChildAt(position);
 	}
 	
+	/**
+	 * Brings this carousel's indicators in line with the current adapter's data.
+	 * Adapters extending {@link CarouselPagerAdapter} trigger this automatically
+	 * when their data changes; other adapters should call this after
+	 * {@link PagerAdapter#notifyDataSetChanged()}.
+	 */
+	public void refreshIndicators() {
+		int count = mPagerAdapter != null ? mPagerAdapter.getCount() : 0;
+		syncIndicators(count);
+		
+		if (count > 0)
+			setActiveIndicator(getCurrentItem());
+	}
+	
+	/**
+	 * Gets the pager's current item, or the item it will be restored to if its
+	 * pages are released.
+	 * @return Position of the current item.
+	 */
+	private int getCurrentItem() {
+		return mArePagesReleased ? mReleasedCurrentItem : mViewPager.getCurrentItem();
+	}
+	
+	/**
+	 * Sets a listener to receive paging metrics for this carousel. Setting a listener
+	 * enables paging instrumentation, setting {@code null} disables it.
+	 * @param listener Listener to receive metrics each time a swipe settles, may be {@code null}.
+	 * @see PagingMonitor
+	 */
+	public void setOnPagingMetricsListener(OnPagingMetricsListener listener) {
+		if (listener == null) {
+			if (mPagingMonitor != null) {
+				mPagingMonitor.stop();
+				mPagingMonitor = null;
+			}
+			
+			return;
+		}
+		
+		if (mPagingMonitor == null)
+			mPagingMonitor = new PagingMonitor(mViewPager);
+		
+		mPagingMonitor.setOnPagingMetricsListener(listener);
+	}
+	
+	/**
+	 * Gets this carousel's paging metrics.
+	 * @return {@link PagingMonitor} holding this carousel's metrics,
+	 * 		   {@code null} if paging instrumentation is not enabled.
+	 */
+	public PagingMonitor getPagingMonitor() {
+		return mPagingMonitor;
+	}
+	
+	/**
+	 * <p>
+	 * Sets the transformer to apply to pages as this carousel scrolls. Only pages that
+	 * are at least partly visible are transformed, and they are drawn from hardware
+	 * layers while the carousel is dragged or settling. Pages that scroll out of view
+	 * or are removed are reset.
+	 * </p>
+	 * 
+	 * <p>
+	 * Page transforms rely on view properties added in API 11 and are ignored on
+	 * older devices.
+	 * </p>
+	 * @param transformer Transformer to apply, {@code null} to remove the current transformer.
+	 */
+	public void setPageTransformer(CarouselPageTransformer transformer) {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB)
+			return;
+		
+		// Undo the current transformer before switching
+		clearPageLayers();
+		for (int i = mTransformedPages.size() - 1; i >= 0; i--) {
+			mPageTransformer.resetPage(mTransformedPages.get(i));
+		}
+		mTransformedPages.clear();
+		
+		mPageTransformer = transformer;
+		if (transformer != null)
+			transformVisiblePages();
+	}
+	
+	/**
+	 * Gets the transformer applied to pages as this carousel scrolls.
+	 * @return {@link CarouselPageTransformer}, {@code null} if there is none.
+	 */
+	public CarouselPageTransformer getPageTransformer() {
+		return mPageTransformer;
+	}
+	
+	/**
+	 * Applies the page transformer to every page that is at least partly visible and resets
+	 * transformed pages that scrolled out of view. While scrolling, the transformer's layer
+	 * target of each visible page is given a hardware layer.
+	 */
+	private void transformVisiblePages() {
+		int clientWidth = mViewPager.getWidth() - mViewPager.getPaddingLeft() - mViewPager.getPaddingRight();
+		if (clientWidth <= 0)
+			return;
+		
+		int visibleLeft = mViewPager.getScrollX() + mViewPager.getPaddingLeft();
+		int visibleRight = visibleLeft + clientWidth;
+		
+		for (int i = 0; i < mViewPager.getChildCount(); i++) {
+			View page = mViewPager.getChildAt(i);
+			if (((ViewPager.LayoutParams) page.getLayoutParams()).isDecor)
+				continue;
+			
+			boolean isVisible = page.getRight() > visibleLeft && page.getLeft() < visibleRight;
+			if (!isVisible) {
+				resetPage(page);
+				continue;
+			}
+			
+			if (mIsScrolling && !mLayeredViews.containsKey(page)) {
+				View layerTarget = mPageTransformer.getLayerTarget(page);
+				if (layerTarget != null)
+					ViewCompat.setLayerType(layerTarget, ViewCompat.LAYER_TYPE_HARDWARE, null);
+				
+				// Pages without a target are recorded too so they are not queried every frame
+				mLayeredViews.put(page, layerTarget);
+			}
+			
+			if (!mTransformedPages.contains(page))
+				mTransformedPages.add(page);
+			
+			float position = (float) (page.getLeft() - visibleLeft) / clientWidth;
+			mPageTransformer.transformPage(page, position);
+		}
+	}
+	
+	/**
+	 * Resets the given page's transform and removes the hardware layer given to it or
+	 * its child, if it has either.
+	 * @param page Page to reset.
+	 */
+	private void resetPage(View page) {
+		View layeredView = mLayeredViews.remove(page);
+		if (layeredView != null)
+			ViewCompat.setLayerType(layeredView, ViewCompat.LAYER_TYPE_NONE, null);
+		
+		if (mTransformedPages.remove(page))
+			mPageTransformer.resetPage(page);
+	}
+	
+	/**
+	 * Removes the hardware layers given to pages or their children while scrolling.
+	 */
+	private void clearPageLayers() {
+		for (View layeredView : mLayeredViews.values()) {
+			if (layeredView != null)
+				ViewCompat.setLayerType(layeredView, ViewCompat.LAYER_TYPE_NONE, null);
+		}
+		mLayeredViews.clear();
+	}
+	
 	/**
 	 * Set a PagerAdapter that will supply views for this carousel as needed.
 	 * @param adapter Adapter to use.
 	 */
 	public void setPagerAdapter(PagerAdapter adapter) {
+		// Released pages belong to the old adapter
+		if (mArePagesReleased) {
+			mArePagesReleased = false;
+			getViewTreeObserver().removeOnPreDrawListener(mRestorePagesListener);
+		}
+		
+		// Adapters are only observed while attached, see onAttachedToWindow()
+		boolean isAttached = getWindowToken() != null;
+		if (isAttached && mPagerAdapter instanceof CarouselPagerAdapter)
+			((CarouselPagerAdapter) mPagerAdapter).unregisterCarouselObserver(mAdapterObserver);
+		
 		mPagerAdapter = adapter;
 		
+		if (isAttached && adapter instanceof CarouselPagerAdapter)
+			((CarouselPagerAdapter) adapter).registerCarouselObserver(mAdapterObserver);
+		
 		mViewPager.setAdapter(adapter);
-		generateIndicators(adapter.getCount());
+		refreshIndicators();
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.carousel;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.View;
+
+/**
+ * <p>
+ *     {@link CarouselPageTransformer} that moves one child of each page slower than the page
+ *     itself, e.g. a banner's background image, and optionally fades pages as they leave the center.
+ * </p>
+ *
+ * <p>
+ *     Only translation and alpha are changed. While the carousel is dragged, the moved child
+ *     is drawn from a hardware layer. Pages are only layered when they are faded and have no
+ *     moved child, since a moving child would force the page's layer to redraw every frame.
+ * </p>
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public class ParallaxPageTransformer implements CarouselPageTransformer {
+
+	private final int mParallaxViewId;
+	private final float mParallaxFactor;
+	private final float mMinAlpha;
+
+	/**
+	 * Instantiates this transformer without fading.
+	 * @param parallaxViewId ID of the page child to move, {@link View#NO_ID} to only fade.
+	 * @param parallaxFactor Fraction of the page's movement the child moves against,
+	 * 						 e.g. {@code 0.5} moves the child at half the page's speed.
+	 */
+	public ParallaxPageTransformer(int parallaxViewId, float parallaxFactor) {
+		this(parallaxViewId, parallaxFactor, 1f);
+	}
+
+	/**
+	 * Instantiates this transformer.
+	 * @param parallaxViewId ID of the page child to move, {@link View#NO_ID} to only fade.
+	 * @param parallaxFactor Fraction of the page's movement the child moves against,
+	 * 						 e.g. {@code 0.5} moves the child at half the page's speed.
+	 * @param minAlpha Alpha of pages one page width away from the center, {@code 1} to disable fading.
+	 */
+	public ParallaxPageTransformer(int parallaxViewId, float parallaxFactor, float minAlpha) {
+		mParallaxViewId = parallaxViewId;
+		mParallaxFactor = parallaxFactor;
+		mMinAlpha = minAlpha;
+	}
+
+	@Override
+	public void transformPage(View page, float position) {
+		float distance = Math.min(1f, Math.abs(position));
+		
+		View parallaxView = getParallaxView(page);
+		if (parallaxView != null)
+			parallaxView.setTranslationX(-position * page.getWidth() * mParallaxFactor);
+		
+		if (mMinAlpha < 1f)
+			page.setAlpha(1f - distance * (1f - mMinAlpha));
+	}
+
+	@Override
+	public View getLayerTarget(View page) {
+		View parallaxView = getParallaxView(page);
+		if (parallaxView != null)
+			return parallaxView;
+		
+		return mMinAlpha < 1f ? page : null;
+	}
+
+	@Override
+	public void resetPage(View page) {
+		View parallaxView = getParallaxView(page);
+		if (parallaxView != null)
+			parallaxView.setTranslationX(0f);
+		
+		page.setAlpha(1f);
+	}
+
+	/**
+	 * Gets the child of the given page to move.
+	 * @param page Page to get the child of.
+	 * @return Child to move, {@code null} if there is none.
+	 */
+	private View getParallaxView(View page) {
+		if (mParallaxViewId == View.NO_ID)
+			return null;
+		
+		return page.findViewById(mParallaxViewId);
+	}
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.carousel;
+
+import android.content.ComponentCallbacks2;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.lillicoder.lib.uiwidgets.R;
+import com.lillicoder.lib.uiwidgets.util.TrimCoordinator;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ *     {@link CarouselPagerAdapter} that recycles page views.
+ * </p>
+ *
+ * <p>
+ *     Pages removed from the pager are detached and kept in a pool per view type.
+ *     When a new page is needed, a pooled view of the same type is handed back to
+ *     {@link #getView(int, View, ViewGroup)} to be re-bound, the same way
+ *     {@link android.widget.Adapter#getView(int, View, ViewGroup)} works for lists.
+ *     Once the pool is warm, swiping through the carousel inflates nothing.
+ * </p>
+ */
+public abstract class RecyclingPagerAdapter extends CarouselPagerAdapter {
+
+	private final SparseArray<ArrayList<View>> mRecycledViews = new SparseArray<ArrayList<View>>();
+
+	/**
+	 * Gets the view for the page at the given position. If the given convert view
+	 * is not {@code null}, it is a previously used page of the same view type and
+	 * should be re-bound instead of inflating a new view.
+	 * @param position Position of the page to get a view for.
+	 * @param convertView Recycled view to re-bind, may be {@code null}.
+	 * @param container Containing pager.
+	 * @return View for the given position.
+	 */
+	public abstract View getView(int position, View convertView, ViewGroup container);
+
+	/**
+	 * Gets the view type of the page at the given position. Views are only recycled
+	 * between pages of the same type.
+	 * @param position Position of the page.
+	 * @return View type of the page, {@code 0} by default.
+	 */
+	public int getItemViewType(int position) {
+		return 0;
+	}
+
+	@Override
+	public Object instantiateItem(ViewGroup container, int position) {
+		int viewType = getItemViewType(position);
+		View convertView = getRecycledView(viewType);
+
+		View view = getView(position, convertView, container);
+		view.setTag(R.id.RecyclingPagerAdapter_viewType, viewType);
+		container.addView(view);
+
+		return view;
+	}
+
+	@Override
+	public void destroyItem(ViewGroup container, int position, Object object) {
+		View view = (View) object;
+		container.removeView(view);
+
+		Integer viewType = (Integer) view.getTag(R.id.RecyclingPagerAdapter_viewType);
+		if (viewType != null)
+			addRecycledView(viewType, view);
+	}
+
+	@Override
+	public boolean isViewFromObject(View view, Object object) {
+		return view == object;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 *     Pages are always re-bound after {@link #notifyDataSetChanged()}. Since
+	 *     their views come back from the pool this is cheap and keeps visible
+	 *     pages in step with the data.
+	 * </p>
+	 */
+	@Override
+	public int getItemPosition(Object object) {
+		return POSITION_NONE;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 *     Discards all pooled page views once memory is running low.
+	 * </p>
+	 */
+	@Override
+	public long onTrimMemory(int level) {
+		if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+			return 0;
+		
+		long bytes = 0;
+		for (int index = 0; index < mRecycledViews.size(); index++) {
+			for (View view : mRecycledViews.valueAt(index)) {
+				bytes += TrimCoordinator.estimateBitmapBytes(view);
+			}
+		}
+		
+		clearRecycledViews();
+		return bytes;
+	}
+
+	/**
+	 * Discards all pooled page views.
+	 */
+	public void clearRecycledViews() {
+		mRecycledViews.clear();
+	}
+
+	/**
+	 * Adds the given view to the pool for the given view type.
+	 * @param viewType View type of the given view.
+	 * @param view View to pool.
+	 */
+	private void addRecycledView(int viewType, View view) {
+		ArrayList<View> views = mRecycledViews.get(viewType);
+		if (views == null) {
+			views = new ArrayList<View>();
+			mRecycledViews.put(viewType, views);
+		}
+
+		views.add(view);
+	}
+
+	/**
+	 * Takes a pooled view of the given view type.
+	 * @param viewType View type to get a view of.
+	 * @return Pooled view, {@code null} if there is no pooled view of the given type.
+	 */
+	private View getRecycledView(int viewType) {
+		ArrayList<View> views = mRecycledViews.get(viewType);
+		if (views == null || views.isEmpty())
+			return null;
+
+		return views.remove(views.size() - 1);
+	}
+
+}
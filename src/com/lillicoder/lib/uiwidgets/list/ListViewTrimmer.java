@@ -0,0 +1,276 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.list;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.os.Build;
+import android.os.Parcelable;
+import android.util.SparseBooleanArray;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ExpandableListAdapter;
+import android.widget.ExpandableListView;
+import android.widget.HeaderViewListAdapter;
+import android.widget.ListAdapter;
+import android.widget.ListView;
+import com.lillicoder.lib.uiwidgets.util.TrimCoordinator;
+import com.lillicoder.lib.uiwidgets.util.Trimmable;
+import junit.framework.Assert;
+
+import java.util.WeakHashMap;
+
+/**
+ * <p>
+ *     {@link Trimmable} that empties an {@link AbsListView}'s pool of recycled row views,
+ *     such as {@link BaseListItemView}s, once the UI is hidden.
+ * </p>
+ *
+ * <p>
+ *     The trimmer installs itself as the list's {@link AbsListView.RecyclerListener} to track
+ *     which rows are in the list's scrap heap, forwarding to an optional delegate listener.
+ *     When trimmed, it re-sets the list's adapter, which is the only public way to clear the
+ *     scrap heap. Re-setting the adapter clears the list's checked items, and for an
+ *     {@link ExpandableListView} its expanded groups, so both are saved beforehand and
+ *     restored afterwards along with the scroll position. Expanded groups are restored
+ *     through the list's saved instance state, in a single pass. The trimmer registers itself with
+ *     the {@link TrimCoordinator} and lives as long as its list.
+ * </p>
+ */
+public class ListViewTrimmer implements Trimmable, AbsListView.RecyclerListener {
+
+    private static final String PRECONDITION_NULL_LIST_VIEW =
+        "Cannot trim a null list view.";
+
+    private final AbsListView mListView;
+    private final AbsListView.RecyclerListener mDelegate;
+
+    private final WeakHashMap<View, Boolean> mScrapViews = new WeakHashMap<View, Boolean>();
+
+    /**
+     * Attaches a trimmer to the given list view.
+     * @param listView List view whose recycled rows should be trimmed.
+     * @param delegate Recycler listener to forward to, may be {@code null}.
+     */
+    public ListViewTrimmer(AbsListView listView, AbsListView.RecyclerListener delegate) {
+        Assert.assertTrue(PRECONDITION_NULL_LIST_VIEW, listView != null);
+
+        mListView = listView;
+        mDelegate = delegate;
+
+        listView.setRecyclerListener(this);
+        TrimCoordinator.getInstance(listView.getContext()).register(this);
+    }
+
+    @Override
+    public void onMovedToScrapHeap(View view) {
+        mScrapViews.put(view, Boolean.TRUE);
+
+        if (mDelegate != null) {
+            mDelegate.onMovedToScrapHeap(view);
+        }
+    }
+
+    @Override
+    public long onTrimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN || mListView.getAdapter() == null) {
+            return 0;
+        }
+
+        // Scrapped rows are detached, rows reused since then have a parent again
+        long bytes = 0;
+        for (View view : mScrapViews.keySet()) {
+            if (view.getParent() == null) {
+                bytes += TrimCoordinator.estimateBitmapBytes(view);
+            }
+        }
+        mScrapViews.clear();
+
+        int firstPosition = mListView.getFirstVisiblePosition();
+        View firstChild = mListView.getChildAt(0);
+        int top = firstChild != null ? firstChild.getTop() : 0;
+        SparseBooleanArray checkedPositions = getCheckedPositions();
+
+        if (mListView instanceof ExpandableListView) {
+            resetExpandableAdapter((ExpandableListView) mListView);
+        } else {
+            resetAdapter();
+        }
+
+        // Positions are flat list positions, valid again once groups are re-expanded
+        if (checkedPositions != null) {
+            setCheckedPositions(checkedPositions);
+        }
+
+        if (mListView instanceof ListView) {
+            ((ListView) mListView).setSelectionFromTop(firstPosition, top);
+        } else {
+            mListView.setSelection(firstPosition);
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Re-sets the list's adapter.
+     */
+    private void resetAdapter() {
+        ListAdapter adapter = mListView.getAdapter();
+
+        // List views wrap their adapter when they have headers or footers, re-set the original
+        if (adapter instanceof HeaderViewListAdapter) {
+            adapter = ((HeaderViewListAdapter) adapter).getWrappedAdapter();
+        }
+
+        mListView.setAdapter(adapter);
+    }
+
+    /**
+     * Re-sets the given expandable list's adapter and re-expands its expanded groups.
+     * @param listView Expandable list view to reset.
+     */
+    private void resetExpandableAdapter(ExpandableListView listView) {
+        ExpandableListAdapter adapter = listView.getExpandableListAdapter();
+        if (adapter == null) {
+            return;
+        }
+
+        // Restoring the list's state would re-open a modal action mode that is still open
+        if (isModalChoiceMode(listView)) {
+            resetExpandableAdapterByGroup(listView, adapter);
+            return;
+        }
+
+        // The saved state holds the expanded groups, restoring it re-expands them in one pass
+        // where expandGroup() re-flattens the list once per group
+        Parcelable state = listView.onSaveInstanceState();
+        listView.setAdapter(adapter);
+        listView.onRestoreInstanceState(state);
+
+        // The restored groups are not announced to the list, notify it without notifying
+        // the expandable adapter's other observers
+        ListAdapter connector = listView.getAdapter();
+        if (connector instanceof HeaderViewListAdapter) {
+            connector = ((HeaderViewListAdapter) connector).getWrappedAdapter();
+        }
+
+        if (connector instanceof BaseAdapter) {
+            ((BaseAdapter) connector).notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Re-sets the given expandable list's adapter and re-expands its expanded groups
+     * one at a time.
+     * @param listView Expandable list view to reset.
+     * @param adapter Adapter of the list.
+     */
+    private void resetExpandableAdapterByGroup(ExpandableListView listView,
+                                               ExpandableListAdapter adapter) {
+        int groupCount = adapter.getGroupCount();
+        boolean[] expandedGroups = new boolean[groupCount];
+        for (int group = 0; group < groupCount; group++) {
+            expandedGroups[group] = listView.isGroupExpanded(group);
+        }
+
+        listView.setAdapter(adapter);
+
+        for (int group = 0; group < groupCount; group++) {
+            if (expandedGroups[group]) {
+                listView.expandGroup(group);
+            }
+        }
+    }
+
+    /**
+     * Determines if the given list uses {@link AbsListView#CHOICE_MODE_MULTIPLE_MODAL},
+     * which is only available from API 11.
+     * @param listView List view to check.
+     * @return {@code true} if the list's choice mode is modal, {@code false} otherwise.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private boolean isModalChoiceMode(ListView listView) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+            && listView.getChoiceMode() == AbsListView.CHOICE_MODE_MULTIPLE_MODAL;
+    }
+
+    /**
+     * Gets a copy of the list's checked positions.
+     * @return Checked positions, {@code null} if the list has no choice mode.
+     */
+    private SparseBooleanArray getCheckedPositions() {
+        SparseBooleanArray checked;
+        if (mListView instanceof ListView) {
+            checked = ((ListView) mListView).getCheckedItemPositions();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            checked = getCheckedPositionsHoneycomb();
+        } else {
+            checked = null;
+        }
+
+        if (checked == null) {
+            return null;
+        }
+
+        // The list clears the returned array when its adapter is re-set
+        SparseBooleanArray copy = new SparseBooleanArray(checked.size());
+        for (int index = 0; index < checked.size(); index++) {
+            copy.append(checked.keyAt(index), checked.valueAt(index));
+        }
+
+        return copy;
+    }
+
+    /**
+     * Gets the checked positions of lists other than {@link ListView}, which only have a
+     * choice mode from API 11.
+     * @return Checked positions, {@code null} if the list has no choice mode.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private SparseBooleanArray getCheckedPositionsHoneycomb() {
+        return mListView.getCheckedItemPositions();
+    }
+
+    /**
+     * Checks the given positions of the list.
+     * @param checked Checked positions from {@link #getCheckedPositions()}.
+     */
+    private void setCheckedPositions(SparseBooleanArray checked) {
+        for (int index = 0; index < checked.size(); index++) {
+            if (!checked.valueAt(index)) {
+                continue;
+            }
+
+            if (mListView instanceof ListView) {
+                ((ListView) mListView).setItemChecked(checked.keyAt(index), true);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                setItemCheckedHoneycomb(checked.keyAt(index));
+            }
+        }
+    }
+
+    /**
+     * Checks the given position of lists other than {@link ListView}.
+     * @param position Position to check.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private void setItemCheckedHoneycomb(int position) {
+        mListView.setItemChecked(position, true);
+    }
+
+}
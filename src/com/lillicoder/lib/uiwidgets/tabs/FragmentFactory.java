@@ -0,0 +1,34 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.tabs;
+
+import android.support.v4.app.Fragment;
+
+/**
+ * Interface describing an object that creates a tab's content {@link Fragment}
+ * without reflection.
+ */
+public interface FragmentFactory {
+
+	/**
+	 * Creates a new content {@link Fragment}. {@link FragmentTabsAdapter} sets the
+	 * tab's arguments on the returned fragment.
+	 * @return New content fragment.
+	 */
+	public Fragment newFragment();
+
+}
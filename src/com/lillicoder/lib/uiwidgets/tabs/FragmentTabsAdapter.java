@@ -23,38 +23,146 @@
 
 package com.lillicoder.lib.uiwidgets.tabs;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
+import android.support.v4.app.FragmentManager;
 import android.support.v4.app.FragmentPagerAdapter;
+import android.support.v4.app.FragmentTransaction;
 import android.support.v4.view.ViewPager;
 import android.support.v4.view.ViewPager.OnPageChangeListener;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.TabHost;
 import android.widget.TabHost.OnTabChangeListener;
 import android.widget.TabHost.TabContentFactory;
 import android.widget.TabHost.TabSpec;
 import android.widget.TabWidget;
+import com.lillicoder.lib.uiwidgets.tabs.TabSwitchMonitor.OnTabSwitchMetricsListener;
+import com.lillicoder.lib.uiwidgets.util.PagingMonitor;
+import com.lillicoder.lib.uiwidgets.util.PagingMonitor.OnPagingMetricsListener;
+import com.lillicoder.lib.uiwidgets.util.TrimCoordinator;
+import com.lillicoder.lib.uiwidgets.util.Trimmable;
 import junit.framework.Assert;
 
-import java.util.LinkedHashMap;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  * Class that handles manipulation of a {@link TabHost} and a {@link ViewPager} in
  * conjunction to provide page-able tabs. This code is taken directly from a Google API
  * sample from v4 of the support library.
+ * <p>
+ * Hosts must call {@link #release()} when their activity is destroyed.
+ * </p>
  */
-public class FragmentTabsAdapter extends FragmentPagerAdapter implements OnTabChangeListener, OnPageChangeListener {
+public class FragmentTabsAdapter extends FragmentPagerAdapter
+	implements OnTabChangeListener, OnPageChangeListener, Trimmable {
 
-	private final Context _context;
-	private final Map<String, TabInfo> _tabs;
+	/**
+	 * State saving window value that keeps every visited tab's fragment alive.
+	 */
+	public static final int STATE_SAVING_DISABLED = -1;
+	
+	/**
+	 * Prefetch tab budget value that disables prefetching.
+	 */
+	public static final int PREFETCH_DISABLED = 0;
+	
+	private static final String KEY_TAB_STATE_PREFIX = "FragmentTabsAdapter_tabState_";
+	private static final String KEY_TAB_ID_TAGS = "FragmentTabsAdapter_tabIdTags";
+	private static final String KEY_TAB_IDS = "FragmentTabsAdapter_tabIds";
+	
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	private static final String ERROR_INSTANTIATE_FRAGMENT =
+		"Unable to instantiate fragment %s: make sure class name exists, is public, and has an empty constructor that is public.";
+	
+	private static final String PRECONDITION_MISMATCHED_BATCH =
+		"Batch tab specs, classes and arguments must have the same number of elements.";
+	
+	private static final String PRECONDITION_INVALID_PREFETCH_BUDGET =
+		"Prefetch budget must not be negative.";
+	
+	private static final String PRECONDITION_INVALID_STATE_SAVING_WINDOW =
+		"State saving window must be STATE_SAVING_DISABLED or greater than or equal to zero.";
+	
+	/**
+	 * No-argument constructors of tab content fragment classes, shared by all adapters.
+	 * Only accessed from the main thread.
+	 */
+	private static final Map<Class<?>, Constructor<?>> FRAGMENT_CONSTRUCTORS =
+		new HashMap<Class<?>, Constructor<?>>();
+	
+	private final FragmentActivity _activity;
+	private final DummyTabFactory _dummyTabFactory;
+	private final FragmentManager _fragmentManager;
+	private final TabRegistry _tabs;
+	private final Map<Object, TabInfo> _tabsByFragment;
+	private final Map<String, Long> _tabIdsByTag;
+	private final Map<Long, String> _tabTagsById;
+	private final List<Fragment> _pendingRemovals;
 	private final TabHost _tabHost;
 	private final ViewPager _viewPager;
 	
+	/**
+	 * {@link MessageQueue.IdleHandler} that prefetches likely next tabs once the
+	 * main thread has no other work.
+	 */
+	private final MessageQueue.IdleHandler _prefetchIdleHandler = new MessageQueue.IdleHandler() {
+		@Override
+		public boolean queueIdle() {
+			FragmentTabsAdapter.this._isPrefetchScheduled = false;
+			FragmentTabsAdapter.this.prefetch();
+			return false;
+		}
+	};
+	
+	/**
+	 * {@link ViewTreeObserver.OnPreDrawListener} that has the pager replace the pages
+	 * trimmed while the UI was hidden before the first frame is drawn again.
+	 */
+	private final ViewTreeObserver.OnPreDrawListener _pageRefreshListener = new ViewTreeObserver.OnPreDrawListener() {
+		@Override
+		public boolean onPreDraw() {
+			FragmentTabsAdapter.this._viewPager.getViewTreeObserver().removeOnPreDrawListener(this);
+			FragmentTabsAdapter.this._isPageRefreshPending = false;
+			FragmentTabsAdapter.this.notifyDataSetChanged();
+			
+			// Skip this frame, the next one shows the re-created pages
+			return false;
+		}
+	};
+	
+	private boolean _isSyncingTabHost;
+	private boolean _isSelectingTab;
+	private boolean _isSelectingPage;
+	private int _stateSavingWindow = STATE_SAVING_DISABLED;
+	
+	private int _prefetchMaxTabs = PREFETCH_DISABLED;
+	private long _prefetchMaxMillis;
+	private boolean _isPrefetchScheduled;
+	private boolean _isPageRefreshPending;
+	private boolean _isReleased;
+	private int _scrollState = ViewPager.SCROLL_STATE_IDLE;
+	private int _lastDirection;
+	private int _previousPosition;
+	private int _selectedPosition;
+	
+	private PagingMonitor _pagingMonitor;
+	private TabSwitchMonitor _tabSwitchMonitor;
+	
 	/**
 	 * Class that creates dummy tabs for a {@link TabHost}.
 	 */
@@ -85,15 +193,41 @@ public class FragmentTabsAdapter extends FragmentPagerAdapter implements OnTabCh
 	public FragmentTabsAdapter(FragmentActivity activity, TabHost tabHost, ViewPager pager) {
 		super(activity.getSupportFragmentManager());
 		
-		this._context = activity;
+		this._activity = activity;
+		this._dummyTabFactory = new DummyTabFactory(activity);
+		this._fragmentManager = activity.getSupportFragmentManager();
 		this._tabHost = tabHost;
 		this._viewPager = pager;
 		
-		this._tabs = new LinkedHashMap<String, TabInfo>();
+		this._tabs = new TabRegistry();
+		this._tabsByFragment = new HashMap<Object, TabInfo>();
+		this._tabIdsByTag = new HashMap<String, Long>();
+		this._tabTagsById = new HashMap<Long, String>();
+		this._pendingRemovals = new ArrayList<Fragment>();
 		
 		this._tabHost.setOnTabChangedListener(this);
 		this._viewPager.setAdapter(this);
 		this._viewPager.setOnPageChangeListener(this);
+		
+		TrimCoordinator.getInstance(activity).register(this);
+	}
+	
+	/**
+	 * Stops this adapter from trimming and prefetching tabs. Must be called from the
+	 * host activity's <code>onDestroy()</code>, the adapter must not be used afterwards.
+	 */
+	public void release() {
+		if (this._isReleased)
+			return;
+		
+		this._isReleased = true;
+		TrimCoordinator.getInstance(this._activity).unregister(this);
+		
+		this.cancelPrefetch();
+		if (this._isPageRefreshPending) {
+			this._isPageRefreshPending = false;
+			this._viewPager.getViewTreeObserver().removeOnPreDrawListener(this._pageRefreshListener);
+		}
 	}
 	
 	/**
@@ -103,14 +237,337 @@ public class FragmentTabsAdapter extends FragmentPagerAdapter implements OnTabCh
 	 * @param args {@link Bundle} arguments.
 	 */
 	public void addTab(TabSpec tabSpec, Class<?> aClass, Bundle args) {
-		tabSpec.setContent(new DummyTabFactory(this._context));
-		String tag = tabSpec.getTag();
+		this.insertTab(this._tabs.size(), tabSpec, aClass, args, null);
+	}
+	
+	/**
+	 * Adds a tab to the tab host whose content fragment is created by the given factory.
+	 * @param tabSpec {@link TabSpec} to add as a tab.
+	 * @param aClass Class to serve as the fragment content for this tab.
+	 * @param args {@link Bundle} arguments.
+	 * @param factory {@link FragmentFactory} that creates the content fragment, may be <code>null</code>.
+	 */
+	public void addTab(TabSpec tabSpec, Class<?> aClass, Bundle args, FragmentFactory factory) {
+		this.insertTab(this._tabs.size(), tabSpec, aClass, args, factory);
+	}
+	
+	/**
+	 * <p>
+	 *     Adds several tabs to the end of the tab host at once.
+	 * </p>
+	 *
+	 * <p>
+	 *     Calling {@link #addTab(TabSpec, Class, Bundle)} repeatedly runs a pager data set
+	 *     pass and tab change callbacks for every tab. This method registers all given
+	 *     tabs, adds them to the tab host while ignoring its tab change callbacks and
+	 *     notifies the pager once.
+	 * </p>
+	 *
+	 * <p>
+	 *     The tab host still adds one indicator view per tab to its {@link TabWidget}, which
+	 *     requests a layout each time. Those requests are not suppressed, they only coalesce
+	 *     into the next layout pass as usual.
+	 * </p>
+	 * @param tabSpecs {@link TabSpec}s to add as tabs.
+	 * @param classes Classes to serve as the fragment content for each tab.
+	 * @param args {@link Bundle} arguments for each tab, may be <code>null</code> if no tab has arguments.
+	 */
+	public void addTabs(List<TabSpec> tabSpecs, List<Class<?>> classes, List<Bundle> args) {
+		Assert.assertTrue(PRECONDITION_MISMATCHED_BATCH, tabSpecs.size() == classes.size());
+		Assert.assertTrue(PRECONDITION_MISMATCHED_BATCH, args == null || tabSpecs.size() == args.size());
 		
-		TabInfo info = new TabInfo(tag, aClass, args);
-		this._tabs.put(tag, info);
-		this._tabHost.addTab(tabSpec);
+		boolean wasEmpty = this._tabs.size() == 0;
+		
+		this._isSyncingTabHost = true;
+		for (int index = 0; index < tabSpecs.size(); index++) {
+			TabSpec tabSpec = tabSpecs.get(index);
+			Bundle tabArgs = args != null ? args.get(index) : null;
+			
+			TabInfo info = this.createTabInfo(tabSpec, classes.get(index), tabArgs, null);
+			this._tabs.insert(this._tabs.size(), info);
+			this._tabHost.addTab(tabSpec);
+		}
+		this._isSyncingTabHost = false;
 		
 		this.notifyDataSetChanged();
+		
+		// The tab host selected the first tab while callbacks were ignored
+		if (wasEmpty && this._tabs.size() > 0)
+			this._viewPager.setCurrentItem(this._tabHost.getCurrentTab());
+	}
+	
+	/**
+	 * Inserts a tab at the given position with the given parameters.
+	 * @param position Position to insert the tab at, in the range [0,{@link #getCount()}].
+	 * @param tabSpec {@link TabSpec} to add as a tab.
+	 * @param aClass Class to serve as the fragment content for this tab.
+	 * @param args {@link Bundle} arguments.
+	 */
+	public void insertTab(int position, TabSpec tabSpec, Class<?> aClass, Bundle args) {
+		this.insertTab(position, tabSpec, aClass, args, null);
+	}
+	
+	/**
+	 * Inserts a tab at the given position whose content fragment is created by the given factory.
+	 * @param position Position to insert the tab at, in the range [0,{@link #getCount()}].
+	 * @param tabSpec {@link TabSpec} to add as a tab.
+	 * @param aClass Class to serve as the fragment content for this tab.
+	 * @param args {@link Bundle} arguments.
+	 * @param factory {@link FragmentFactory} that creates the content fragment, may be <code>null</code>.
+	 */
+	public void insertTab(int position, TabSpec tabSpec, Class<?> aClass, Bundle args, FragmentFactory factory) {
+		TabInfo info = this.createTabInfo(tabSpec, aClass, args, factory);
+		
+		if (position == this._tabs.size()) {
+			// Appending does not disturb existing tabs, the tab host can simply add it
+			this._tabs.insert(position, info);
+			this._tabHost.addTab(tabSpec);
+			this.notifyDataSetChanged();
+		} else {
+			TabInfo currentTab = this.getCurrentTabInfo();
+			int currentPosition = this._viewPager.getCurrentItem();
+			
+			this._tabs.insert(position, info);
+			this.onTabsRearranged(currentTab, currentPosition);
+		}
+	}
+	
+	/**
+	 * Removes the tab with the given tag.
+	 * @param tag Tag of the tab to remove.
+	 * @return <code>true</code> if the tab was removed,
+	 * 		   <code>false</code> if no tab with the given tag exists.
+	 */
+	public boolean removeTab(String tag) {
+		TabInfo info = this._tabs.get(tag);
+		if (info == null)
+			return false;
+		
+		this.removeTabAt(info.getPosition());
+		return true;
+	}
+	
+	/**
+	 * Removes the tab at the given position.
+	 * @param position Position of the tab to remove.
+	 */
+	public void removeTabAt(int position) {
+		TabInfo currentTab = this.getCurrentTabInfo();
+		int currentPosition = this._viewPager.getCurrentItem();
+		
+		TabInfo removed = this._tabs.remove(position);
+		
+		// The pager only destroys the fragments it currently holds, fragments it has
+		// already detached have to be removed here
+		Fragment fragment = removed.getFragment();
+		if (fragment != null && fragment.isDetached()) {
+			this._tabsByFragment.remove(fragment);
+			this._pendingRemovals.add(fragment);
+			removed.setFragment(null);
+		}
+		
+		this.onTabsRearranged(currentTab, currentPosition);
+	}
+	
+	/**
+	 * Moves the tab at the given position to a new position.
+	 * @param fromPosition Current position of the tab.
+	 * @param toPosition New position of the tab.
+	 */
+	public void moveTab(int fromPosition, int toPosition) {
+		if (fromPosition == toPosition)
+			return;
+		
+		TabInfo currentTab = this.getCurrentTabInfo();
+		int currentPosition = this._viewPager.getCurrentItem();
+		
+		this._tabs.move(fromPosition, toPosition);
+		this.onTabsRearranged(currentTab, currentPosition);
+	}
+	
+	/**
+	 * Creates a {@link TabInfo} for a new tab with the given parameters.
+	 * @param tabSpec {@link TabSpec} of the tab.
+	 * @param aClass Class to serve as the fragment content for the tab.
+	 * @param args {@link Bundle} arguments.
+	 * @param factory {@link FragmentFactory} that creates the content fragment, may be <code>null</code>.
+	 * @return {@link TabInfo} for the new tab.
+	 */
+	private TabInfo createTabInfo(TabSpec tabSpec, Class<?> aClass, Bundle args, FragmentFactory factory) {
+		tabSpec.setContent(this._dummyTabFactory);
+		String tag = tabSpec.getTag();
+		
+		TabInfo info = new TabInfo(tag, aClass, args, factory);
+		info.setId(this.getTabId(tag));
+		info.setTabSpec(tabSpec);
+		
+		return info;
+	}
+	
+	/**
+	 * Gets the item ID for the tab with the given tag. IDs are derived from the tag so that
+	 * fragments the {@link FragmentManager} restores after the process is recreated, which
+	 * it finds by ID, attach to the same tab. Tags whose hashes collide are given the next
+	 * free ID, and the assignments are kept in {@link #saveState()}.
+	 * @param tag Tag of the tab.
+	 * @return Stable item ID of the tab.
+	 */
+	private long getTabId(String tag) {
+		Long existingId = this._tabIdsByTag.get(tag);
+		if (existingId != null)
+			return existingId;
+		
+		// 64-bit FNV-1a hash of the tag, probing past IDs taken by other tags
+		long id = FNV_OFFSET_BASIS;
+		for (int index = 0; index < tag.length(); index++) {
+			id ^= tag.charAt(index);
+			id *= FNV_PRIME;
+		}
+		
+		while (this._tabTagsById.containsKey(id)) {
+			id++;
+		}
+		
+		this.putTabId(tag, id);
+		return id;
+	}
+	
+	/**
+	 * Records the item ID of the tab with the given tag.
+	 * @param tag Tag of the tab.
+	 * @param id Item ID of the tab.
+	 */
+	private void putTabId(String tag, long id) {
+		Long oldId = this._tabIdsByTag.put(tag, id);
+		if (oldId != null)
+			this._tabTagsById.remove(oldId);
+		
+		this._tabTagsById.put(id, tag);
+	}
+	
+	/**
+	 * Gets the {@link TabInfo} with the given tag.
+	 * @param tag Tag of the tab to get.
+	 * @return {@link TabInfo} with the given tag,
+	 * 		   <code>null</code> if no tab with that tag exists.
+	 */
+	public TabInfo getTabInfo(String tag) {
+		return this._tabs.get(tag);
+	}
+	
+	/**
+	 * Gets the position of the tab with the given tag.
+	 * @param tag Tag of the tab to get the position of.
+	 * @return Position of the tab, {@link TabInfo#NO_POSITION} if no tab with that tag exists.
+	 */
+	public int getTabPosition(String tag) {
+		TabInfo info = this._tabs.get(tag);
+		return info != null ? info.getPosition() : TabInfo.NO_POSITION;
+	}
+	
+	/**
+	 * <p>
+	 *     Sets the state saving window for this adapter.
+	 * </p>
+	 *
+	 * <p>
+	 *     By default every visited tab keeps its fragment instance alive. When a window is
+	 *     set, fragments of tabs more than <code>window</code> positions away from the current
+	 *     tab are removed once the pager lets go of them. Their saved state is kept in their
+	 *     {@link TabInfo} and restored when the tab is shown again, so memory stays flat no
+	 *     matter how many tabs there are.
+	 * </p>
+	 * @param window Number of tabs on each side of the current tab whose fragments are kept
+	 * 				 alive, or {@link #STATE_SAVING_DISABLED} to keep all fragments alive.
+	 */
+	public void setStateSavingWindow(int window) {
+		Assert.assertTrue(PRECONDITION_INVALID_STATE_SAVING_WINDOW,
+						  window == STATE_SAVING_DISABLED || window >= 0);
+		
+		this._stateSavingWindow = window;
+		this.trimFragments();
+	}
+	
+	/**
+	 * Gets the state saving window for this adapter.
+	 * @return State saving window, {@link #STATE_SAVING_DISABLED} if state saving is disabled.
+	 * @see #setStateSavingWindow(int)
+	 */
+	public int getStateSavingWindow() {
+		return this._stateSavingWindow;
+	}
+	
+	/**
+	 * <p>
+	 *     Sets the prefetch budget for this adapter.
+	 * </p>
+	 *
+	 * <p>
+	 *     When the pager settles, the adapter waits for the main thread to go idle and then
+	 *     creates the fragments of the tabs the user is most likely to visit next: the tabs
+	 *     ahead in the direction of the last page change, then the previously visited tab.
+	 *     Tabs within the pager's offscreen page limit are already kept live by the pager and
+	 *     are skipped, as are tabs whose fragment is attached. Fragments implementing {@link Prefetchable} are asked to start loading their data.
+	 *     Prefetching stops as soon as either budget is spent or a new swipe starts.
+	 * </p>
+	 * @param maxTabs Maximum number of tabs to prefetch each time the pager settles,
+	 * 				  {@link #PREFETCH_DISABLED} to disable prefetching.
+	 * @param maxMillis Maximum time in milliseconds to spend prefetching each time the pager settles.
+	 */
+	public void setPrefetchBudget(int maxTabs, long maxMillis) {
+		Assert.assertTrue(PRECONDITION_INVALID_PREFETCH_BUDGET, maxTabs >= 0 && maxMillis >= 0);
+		
+		this._prefetchMaxTabs = maxTabs;
+		this._prefetchMaxMillis = maxMillis;
+		if (maxTabs == PREFETCH_DISABLED)
+			this.cancelPrefetch();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 *     Once the UI is hidden, removes the fragments of every tab but the current one,
+	 *     keeping their saved state in their {@link TabInfo} as the state saving window does,
+	 *     and drops prefetched fragments. Pages the pager still held are re-created from
+	 *     their saved state right before the UI is drawn again.
+	 * </p>
+	 */
+	@Override
+	public long onTrimMemory(int level) {
+		if (level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+			return 0;
+		
+		// Fragments of a finishing activity are about to be removed from their manager
+		if (this._isReleased || this._activity.isFinishing())
+			return 0;
+		
+		int current = this._viewPager.getCurrentItem();
+		boolean hasTrimmedPages = false;
+		long bytes = 0;
+		for (int position = 0; position < this._tabs.size(); position++) {
+			TabInfo info = this._tabs.get(position);
+			
+			// Prefetched fragments were never added, their tab still holds their saved state
+			info.setPrefetchedFragment(null);
+			
+			// Only fragments the fragment manager still holds have state it can save
+			Fragment fragment = info.getFragment();
+			if (fragment == null || !isHeldByManager(fragment) || position == current)
+				continue;
+			
+			if (!fragment.isDetached())
+				hasTrimmedPages = true;
+			
+			bytes += TrimCoordinator.estimateBitmapBytes(fragment.getView());
+			this.retireFragment(info);
+		}
+		
+		this.commitPendingRemovals();
+		
+		if (hasTrimmedPages)
+			this.schedulePageRefresh();
+		
+		return bytes;
 	}
 	
 	@Override
@@ -118,14 +575,316 @@ public class FragmentTabsAdapter extends FragmentPagerAdapter implements OnTabCh
 		return this._tabs.size();
 	}
 	
+	@Override
+	public long getItemId(int position) {
+		// Tab IDs follow the tab rather than the position so that moved tabs
+		// find their existing fragments
+		return this.getTabInfoByPosition(position).getId();
+	}
+	
+	@Override
+	public int getItemPosition(Object object) {
+		TabInfo info = this._tabsByFragment.get(object);
+		if (!this._tabs.contains(info))
+			return POSITION_NONE;
+		
+		return info.getPosition();
+	}
+	
+	@Override
+	public Object instantiateItem(ViewGroup container, int position) {
+		Object item = super.instantiateItem(container, position);
+		
+		TabInfo info = this.getTabInfoByPosition(position);
+		info.setFragment((Fragment) item);
+		this._tabsByFragment.put(item, info);
+		
+		return item;
+	}
+	
+	@Override
+	public void destroyItem(ViewGroup container, int position, Object object) {
+		TabInfo info = this._tabsByFragment.get(object);
+		boolean isRegistered = this._tabs.contains(info);
+		
+		// State has to be saved while the fragment is still added
+		if (isRegistered && this.isOutsideStateSavingWindow(info.getPosition()))
+			this.retireFragment(info);
+		
+		super.destroyItem(container, position, object);
+		
+		// Fragments of removed tabs will never be reattached, remove them entirely
+		if (!isRegistered) {
+			this._tabsByFragment.remove(object);
+			this._pendingRemovals.add((Fragment) object);
+			if (info != null)
+				info.setFragment(null);
+		}
+	}
+	
+	@Override
+	public void finishUpdate(ViewGroup container) {
+		super.finishUpdate(container);
+		this.commitPendingRemovals();
+	}
+	
+	@Override
+	public Parcelable saveState() {
+		Bundle state = null;
+		if (!this._tabIdsByTag.isEmpty()) {
+			String[] tags = new String[this._tabIdsByTag.size()];
+			long[] ids = new long[tags.length];
+			int index = 0;
+			for (Map.Entry<String, Long> entry : this._tabIdsByTag.entrySet()) {
+				tags[index] = entry.getKey();
+				ids[index] = entry.getValue();
+				index++;
+			}
+			
+			state = new Bundle();
+			state.putStringArray(KEY_TAB_ID_TAGS, tags);
+			state.putLongArray(KEY_TAB_IDS, ids);
+		}
+		
+		for (int position = 0; position < this._tabs.size(); position++) {
+			TabInfo info = this._tabs.get(position);
+			Fragment.SavedState savedState = info.getSavedState();
+			if (savedState != null) {
+				if (state == null)
+					state = new Bundle();
+				
+				state.putParcelable(KEY_TAB_STATE_PREFIX + info.getTag(), savedState);
+			}
+		}
+		
+		return state;
+	}
+	
+	@Override
+	public void restoreState(Parcelable state, ClassLoader loader) {
+		if (state == null)
+			return;
+		
+		Bundle bundle = (Bundle) state;
+		bundle.setClassLoader(loader);
+		
+		// Hash collisions may have been resolved in a different order before the
+		// process was recreated, take the IDs restored fragments were saved under
+		String[] tags = bundle.getStringArray(KEY_TAB_ID_TAGS);
+		long[] ids = bundle.getLongArray(KEY_TAB_IDS);
+		if (tags != null && ids != null)
+			this.restoreTabIds(tags, ids);
+		
+		for (int position = 0; position < this._tabs.size(); position++) {
+			TabInfo info = this._tabs.get(position);
+			Fragment.SavedState savedState = bundle.getParcelable(KEY_TAB_STATE_PREFIX + info.getTag());
+			if (savedState != null)
+				info.setSavedState(savedState);
+		}
+	}
+	
+	/**
+	 * Re-assigns the given saved item IDs to their tabs, moving any tab currently holding
+	 * one of those IDs to a free ID.
+	 * @param tags Saved tab tags.
+	 * @param ids Saved item ID of each tag.
+	 */
+	private void restoreTabIds(String[] tags, long[] ids) {
+		for (int index = 0; index < tags.length && index < ids.length; index++) {
+			String holder = this._tabTagsById.get(ids[index]);
+			if (holder != null && !holder.equals(tags[index])) {
+				this._tabIdsByTag.remove(holder);
+				this._tabTagsById.remove(ids[index]);
+			}
+			
+			this.putTabId(tags[index], ids[index]);
+		}
+		
+		// Tabs that lost their ID to a saved one get a new one
+		for (int position = 0; position < this._tabs.size(); position++) {
+			TabInfo info = this._tabs.get(position);
+			info.setId(this.getTabId(info.getTag()));
+		}
+	}
+	
 	@Override
 	public Fragment getItem(int position) {
+		long start = System.nanoTime();
 		TabInfo info = this.getTabInfoByPosition(position);
-		Fragment fragment = 
-			Fragment.instantiate(this._context, info.getFragmentClassName(), info.getArguments());
+		
+		// Hand out the fragment created while prefetching, if any
+		Fragment fragment = info.getPrefetchedFragment();
+		if (fragment != null)
+			info.setPrefetchedFragment(null);
+		else
+			fragment = this.createFragment(info);
+		
+		// The fragment now carries the tab's saved state
+		info.setSavedState(null);
+		
+		if (this._pagingMonitor != null)
+			this._pagingMonitor.onPageInstantiated();
+		if (this._tabSwitchMonitor != null)
+			this._tabSwitchMonitor.onFragmentInstantiated(System.nanoTime() - start);
+		
+		return fragment;
+	}
+	
+	/**
+	 * Creates a new instance of the given tab's content fragment.
+	 * @param info Tab to create the fragment for.
+	 * @return New content {@link Fragment}.
+	 */
+	private Fragment createFragment(TabInfo info) {
+		FragmentFactory factory = info.getFactory();
+		Fragment fragment;
+		if (factory != null)
+			fragment = factory.newFragment();
+		else
+			fragment = this.newFragmentInstance(info.getFragmentClass());
+		
+		Bundle args = info.getArguments();
+		if (args != null) {
+			args.setClassLoader(fragment.getClass().getClassLoader());
+			fragment.setArguments(args);
+		}
+		
+		// Restore the state of a fragment removed by the state saving window. The tab
+		// keeps the state until the fragment is handed to the pager, in case a
+		// prefetched fragment is dropped first.
+		Fragment.SavedState savedState = info.getSavedState();
+		if (savedState != null)
+			fragment.setInitialSavedState(savedState);
+		
 		return fragment;
 	}
 	
+	/**
+	 * Creates a new instance of the given fragment class through its cached no-argument
+	 * constructor. Unlike {@link Fragment#instantiate(Context, String, Bundle)} this does
+	 * not resolve the class by name.
+	 * @param aClass Fragment class to instantiate.
+	 * @return New fragment instance.
+	 */
+	private Fragment newFragmentInstance(Class<?> aClass) {
+		try {
+			Constructor<?> constructor = FRAGMENT_CONSTRUCTORS.get(aClass);
+			if (constructor == null) {
+				constructor = aClass.getConstructor();
+				FRAGMENT_CONSTRUCTORS.put(aClass, constructor);
+			}
+			
+			return (Fragment) constructor.newInstance();
+		} catch (Exception e) {
+			throw new Fragment.InstantiationException(String.format(ERROR_INSTANTIATE_FRAGMENT,
+																	aClass.getName()),
+													  e);
+		}
+	}
+	
+	/**
+	 * Queues a prefetch pass for the next time the main thread is idle.
+	 */
+	private void schedulePrefetch() {
+		if (this._prefetchMaxTabs == PREFETCH_DISABLED || this._isPrefetchScheduled)
+			return;
+		
+		this._isPrefetchScheduled = true;
+		Looper.myQueue().addIdleHandler(this._prefetchIdleHandler);
+	}
+	
+	/**
+	 * Cancels a queued prefetch pass.
+	 */
+	private void cancelPrefetch() {
+		if (!this._isPrefetchScheduled)
+			return;
+		
+		this._isPrefetchScheduled = false;
+		Looper.myQueue().removeIdleHandler(this._prefetchIdleHandler);
+	}
+	
+	/**
+	 * Prefetches the tabs most likely to be visited next, within the prefetch budget.
+	 */
+	private void prefetch() {
+		int current = this._viewPager.getCurrentItem();
+		int direction = this._lastDirection != 0 ? this._lastDirection : 1;
+		
+		// The pager already holds the tabs within its offscreen limit, start past them
+		int offscreenLimit = this._viewPager.getOffscreenPageLimit();
+		int firstOutside = offscreenLimit + 1;
+		
+		// Most likely first: continuing in the same direction, then going back
+		int[] candidates = {
+			current + firstOutside * direction,
+			current + (firstOutside + 1) * direction,
+			this._previousPosition,
+			current - firstOutside * direction
+		};
+		
+		long deadline = SystemClock.uptimeMillis() + this._prefetchMaxMillis;
+		int prefetched = 0;
+		for (int index = 0; index < candidates.length; index++) {
+			if (prefetched >= this._prefetchMaxTabs
+				|| this._scrollState != ViewPager.SCROLL_STATE_IDLE
+				|| SystemClock.uptimeMillis() > deadline)
+				break;
+			
+			int candidate = candidates[index];
+			if (Math.abs(candidate - current) <= offscreenLimit || candidate < 0
+				|| candidate >= this._tabs.size() || this.isRepeatedCandidate(candidates, index))
+				continue;
+			
+			if (this.prefetchTab(this._tabs.get(candidate)))
+				prefetched++;
+		}
+	}
+	
+	/**
+	 * Determines if the candidate at the given index appears earlier in the given candidates.
+	 * @param candidates Candidate positions.
+	 * @param index Index of the candidate to check.
+	 * @return <code>true</code> if the candidate was already considered,
+	 * 		   <code>false</code> otherwise.
+	 */
+	private boolean isRepeatedCandidate(int[] candidates, int index) {
+		for (int earlier = 0; earlier < index; earlier++) {
+			if (candidates[earlier] == candidates[index])
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Creates the given tab's fragment if it does not exist and lets it start loading.
+	 * Tabs whose fragment is attached, or was already prefetched, are skipped.
+	 * @param info Tab to prefetch.
+	 * @return <code>true</code> if any prefetch work was done for the tab,
+	 * 		   <code>false</code> if the tab was skipped or its fragment cannot prefetch.
+	 */
+	private boolean prefetchTab(TabInfo info) {
+		if (info.getPrefetchedFragment() != null)
+			return false;
+		
+		// Attached fragments are live and loading on their own
+		Fragment fragment = info.getFragment();
+		if (fragment != null && fragment.isAdded())
+			return false;
+		
+		boolean isNew = fragment == null;
+		if (isNew) {
+			fragment = this.createFragment(info);
+			info.setPrefetchedFragment(fragment);
+		}
+		
+		if (fragment instanceof Prefetchable)
+			((Prefetchable) fragment).onPrefetch(this._activity);
+		
+		return isNew || fragment instanceof Prefetchable;
+	}
+	
 	/**
 	 * Gets the {@link TabInfo} at the given position.
 	 * @param position Position of the {@link TabInfo} to fetch.
@@ -135,25 +894,258 @@ public class FragmentTabsAdapter extends FragmentPagerAdapter implements OnTabCh
 	private TabInfo getTabInfoByPosition(int position) {
 		Assert.assertTrue(position >= 0);
 		
-		int index = position;
-		for (Entry<String, TabInfo> entry : this._tabs.entrySet()) {
-			if (index == 0)
-				return (TabInfo) entry.getValue();
-			else
-				index -= 1;
+		if (position >= this._tabs.size())
+			return null;
+		
+		return this._tabs.get(position);
+	}
+	
+	/**
+	 * Determines if the given position is outside the state saving window around the
+	 * pager's current item.
+	 * @param position Position to check.
+	 * @return <code>true</code> if state saving is enabled and the position is outside the window,
+	 * 		   <code>false</code> otherwise.
+	 */
+	private boolean isOutsideStateSavingWindow(int position) {
+		if (this._stateSavingWindow == STATE_SAVING_DISABLED)
+			return false;
+		
+		int distance = Math.abs(position - this._viewPager.getCurrentItem());
+		return distance > this._stateSavingWindow;
+	}
+	
+	/**
+	 * Determines if the given fragment is still held by its fragment manager, either added
+	 * or detached by the pager, and not yet removed or destroyed.
+	 * @param fragment Fragment to check.
+	 * @return <code>true</code> if the fragment is held by its manager, <code>false</code> otherwise.
+	 */
+	private static boolean isHeldByManager(Fragment fragment) {
+		return fragment.isAdded() || (fragment.isDetached() && fragment.getActivity() != null);
+	}
+	
+	/**
+	 * Saves the state of the given tab's fragment into the tab and queues the
+	 * fragment for removal.
+	 * @param info Tab whose fragment should be retired.
+	 */
+	private void retireFragment(TabInfo info) {
+		Fragment fragment = info.getFragment();
+		info.setSavedState(this._fragmentManager.saveFragmentInstanceState(fragment));
+		info.setFragment(null);
+		
+		this._tabsByFragment.remove(fragment);
+		this._pendingRemovals.add(fragment);
+	}
+	
+	/**
+	 * Retires the detached fragments of tabs that have fallen outside the state
+	 * saving window. Fragments still held by the pager are retired when the pager
+	 * destroys them.
+	 */
+	private void trimFragments() {
+		if (this._stateSavingWindow == STATE_SAVING_DISABLED)
+			return;
+		
+		for (int position = 0; position < this._tabs.size(); position++) {
+			TabInfo info = this._tabs.get(position);
+			Fragment fragment = info.getFragment();
+			if (fragment != null && fragment.isDetached() && this.isOutsideStateSavingWindow(position))
+				this.retireFragment(info);
 		}
 		
-		return null;
+		this.commitPendingRemovals();
+	}
+	
+	/**
+	 * Has the pager replace its pages before the next frame is drawn.
+	 */
+	private void schedulePageRefresh() {
+		if (this._isPageRefreshPending)
+			return;
+		
+		this._isPageRefreshPending = true;
+		this._viewPager.getViewTreeObserver().addOnPreDrawListener(this._pageRefreshListener);
+	}
+	
+	/**
+	 * Removes all fragments queued for removal from the fragment manager.
+	 */
+	private void commitPendingRemovals() {
+		if (this._pendingRemovals.isEmpty())
+			return;
+		
+		FragmentTransaction transaction = this._fragmentManager.beginTransaction();
+		for (Fragment fragment : this._pendingRemovals) {
+			transaction.remove(fragment);
+		}
+		
+		this._pendingRemovals.clear();
+		transaction.commitAllowingStateLoss();
+		this._fragmentManager.executePendingTransactions();
+	}
+	
+	/**
+	 * Gets the {@link TabInfo} of the pager's current item.
+	 * @return Current {@link TabInfo}, <code>null</code> if there are no tabs.
+	 */
+	private TabInfo getCurrentTabInfo() {
+		return this.getTabInfoByPosition(this._viewPager.getCurrentItem());
+	}
+	
+	/**
+	 * Brings the tab host and pager in line with the registry after tabs
+	 * have been inserted, removed or moved.
+	 * @param currentTab Tab that was current before the change.
+	 * @param currentPosition Position that was current before the change.
+	 */
+	private void onTabsRearranged(TabInfo currentTab, int currentPosition) {
+		// Mirror the pager: the current tab stays current, if it was removed
+		// the tab now at its old position becomes current
+		int newPosition;
+		if (this._tabs.contains(currentTab))
+			newPosition = currentTab.getPosition();
+		else
+			newPosition = Math.max(0, Math.min(currentPosition, this._tabs.size() - 1));
+		
+		this.rebuildTabHost(newPosition);
+		this.notifyDataSetChanged();
+	}
+	
+	/**
+	 * Re-adds every registered tab to the tab host in registry order.
+	 * {@link TabHost} only supports appending tabs, so this is the only way
+	 * to insert, remove or reorder them.
+	 * @param currentPosition Position of the tab to make current.
+	 */
+	private void rebuildTabHost(int currentPosition) {
+		this._isSyncingTabHost = true;
+		
+		this._tabHost.clearAllTabs();
+		for (int position = 0; position < this._tabs.size(); position++) {
+			this._tabHost.addTab(this._tabs.get(position).getTabSpec());
+		}
+		
+		if (currentPosition < this._tabs.size())
+			this._tabHost.setCurrentTab(currentPosition);
+		
+		this._isSyncingTabHost = false;
 	}
 
+	/**
+	 * Sets a listener to receive paging metrics for the tabs' pager. Setting a listener
+	 * enables paging instrumentation, setting <code>null</code> disables it.
+	 * @param listener Listener to receive metrics each time a swipe settles, may be <code>null</code>.
+	 * @see PagingMonitor
+	 */
+	public void setOnPagingMetricsListener(OnPagingMetricsListener listener) {
+		if (listener == null) {
+			if (this._pagingMonitor != null) {
+				this._pagingMonitor.stop();
+				this._pagingMonitor = null;
+			}
+			
+			return;
+		}
+		
+		if (this._pagingMonitor == null)
+			this._pagingMonitor = new PagingMonitor(this._viewPager);
+		
+		this._pagingMonitor.setOnPagingMetricsListener(listener);
+	}
+	
+	/**
+	 * Gets the paging metrics for the tabs' pager.
+	 * @return {@link PagingMonitor} holding the paging metrics,
+	 * 		   <code>null</code> if paging instrumentation is not enabled.
+	 */
+	public PagingMonitor getPagingMonitor() {
+		return this._pagingMonitor;
+	}
+	
+	/**
+	 * Sets a listener to receive tab switch latency metrics. Setting a listener
+	 * enables tab switch instrumentation, setting <code>null</code> disables it.
+	 * @param listener Listener to receive metrics each time a tab switch completes, may be <code>null</code>.
+	 * @see TabSwitchMonitor
+	 */
+	public void setOnTabSwitchMetricsListener(OnTabSwitchMetricsListener listener) {
+		if (listener == null) {
+			if (this._tabSwitchMonitor != null) {
+				this._tabSwitchMonitor.stop();
+				this._tabSwitchMonitor = null;
+			}
+			
+			return;
+		}
+		
+		if (this._tabSwitchMonitor == null)
+			this._tabSwitchMonitor = new TabSwitchMonitor(this._viewPager);
+		
+		this._tabSwitchMonitor.setOnTabSwitchMetricsListener(listener);
+	}
+	
+	/**
+	 * Gets the tab switch latency metrics.
+	 * @return {@link TabSwitchMonitor} holding the tab switch metrics,
+	 * 		   <code>null</code> if tab switch instrumentation is not enabled.
+	 */
+	public TabSwitchMonitor getTabSwitchMonitor() {
+		return this._tabSwitchMonitor;
+	}
+	
 	@Override
-	public void onPageScrollStateChanged(int state) {}
+	public void onPageScrollStateChanged(int state) {
+		if (this._pagingMonitor != null)
+			this._pagingMonitor.onPageScrollStateChanged(state);
+		
+		if (this._tabSwitchMonitor != null) {
+			if (state == ViewPager.SCROLL_STATE_DRAGGING)
+				this._tabSwitchMonitor.onSwitchStarted();
+			else if (state == ViewPager.SCROLL_STATE_IDLE)
+				this._tabSwitchMonitor.onScrollIdle();
+		}
+		
+		// Prefetching must never compete with a swipe
+		this._scrollState = state;
+		if (state == ViewPager.SCROLL_STATE_IDLE)
+			this.schedulePrefetch();
+		else
+			this.cancelPrefetch();
+	}
 
 	@Override
 	public void onPageScrolled(int position, float positionOffset, int positionOffsetPixels) {}
 
 	@Override
 	public void onPageSelected(int position) {
+		if (this._pagingMonitor != null)
+			this._pagingMonitor.onPageSelected(position);
+		// The pager is already settling when it selects a page it scrolls to
+		if (this._tabSwitchMonitor != null) {
+			boolean isSettled = this._scrollState == ViewPager.SCROLL_STATE_IDLE;
+			this._tabSwitchMonitor.onTabSelected(this._tabs.get(position).getTag(), isSettled);
+		}
+		
+		this.trimFragments();
+		
+		// Remember where the user came from to predict where they go next
+		if (position != this._selectedPosition) {
+			this._lastDirection = position > this._selectedPosition ? 1 : -1;
+			this._previousPosition = this._selectedPosition;
+			this._selectedPosition = position;
+		}
+		
+		// A tab tap already moved the tab host, bouncing back would be redundant
+		if (this._tabHost.getCurrentTab() == position) {
+			// Unless this is the echo of onTabChanged moving the pager
+			if (!this._isSelectingPage && this._tabSwitchMonitor != null)
+				this._tabSwitchMonitor.onRedundantRoundTrip();
+			
+			return;
+		}
+		
 		// According to the sample comments, the TabHost
 		// will automatically put focus on the current tab
 		// when the tab changes, thus taking focus from the
@@ -165,15 +1157,37 @@ public class FragmentTabsAdapter extends FragmentPagerAdapter implements OnTabCh
 		int oldFocusability = widget.getDescendantFocusability();
 		widget.setDescendantFocusability(ViewGroup.FOCUS_BLOCK_DESCENDANTS);
 		
+		this._isSelectingTab = true;
 		this._tabHost.setCurrentTab(position);
+		this._isSelectingTab = false;
 		
 		widget.setDescendantFocusability(oldFocusability);
 	}
 
 	@Override
 	public void onTabChanged(String tabId) {
+		if (this._isSyncingTabHost)
+			return;
+		
+		// Tab changes made by the pager already have the pager on the right item
+		if (this._isSelectingTab)
+			return;
+		
+		// Any other tab change asking for the pager's current item is redundant
 		int position = this._tabHost.getCurrentTab();
+		if (this._viewPager.getCurrentItem() == position) {
+			if (this._tabSwitchMonitor != null)
+				this._tabSwitchMonitor.onRedundantRoundTrip();
+			
+			return;
+		}
+		
+		if (this._tabSwitchMonitor != null)
+			this._tabSwitchMonitor.onSwitchStarted();
+		
+		this._isSelectingPage = true;
 		this._viewPager.setCurrentItem(position);
+		this._isSelectingPage = false;
 	}
 
 }
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.tabs;
+
+import android.content.Context;
+
+/**
+ * <p>
+ *     Interface that a tab content {@link android.support.v4.app.Fragment} may implement
+ *     to start loading its data before it is shown.
+ * </p>
+ *
+ * <p>
+ *     {@link FragmentTabsAdapter} calls {@link #onPrefetch(Context)} while the pager is idle
+ *     for the tabs the user is likely to visit next. The fragment may not be attached yet
+ *     when this is called and the call may be repeated, so implementations should start
+ *     background work only once and must not touch views.
+ * </p>
+ */
+public interface Prefetchable {
+
+	/**
+	 * Called when this fragment's tab is likely to be shown soon.
+	 * @param context {@link Context} to start loading with.
+	 */
+	public void onPrefetch(Context context);
+
+}
@@ -25,6 +25,7 @@ package com.lillicoder.lib.uiwidgets.tabs;
 
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
+import android.widget.TabHost.TabSpec;
 
 /**
  * Utility class that holds the tab information needed by 
@@ -32,9 +33,20 @@ import android.support.v4.app.Fragment;
  */
 public class TabInfo {
 	
+	/**
+	 * Position of a tab that is not registered with an adapter.
+	 */
+	public static final int NO_POSITION = -1;
+	
 	private Bundle _arguments;
 	private Class<?> _class;
+	private FragmentFactory _factory;
 	private Fragment _fragment;
+	private long _id;
+	private int _position = NO_POSITION;
+	private Fragment _prefetchedFragment;
+	private Fragment.SavedState _savedState;
+	private TabSpec _tabSpec;
 	private String _tag;
 	
 	/**
@@ -44,9 +56,21 @@ public class TabInfo {
 	 * @param arguments Arguments {@link Bundle} for use when instantiating this tab's content fragment.
 	 */
 	public TabInfo(String tag, Class<?> aClass, Bundle arguments) {
+		this(tag, aClass, arguments, null);
+	}
+	
+	/**
+	 * Instantiates a new instance of this class.
+	 * @param tag The tag to use for this tab.
+	 * @param aClass The class of the {@link Fragment} that will be the content of this tab.
+	 * @param arguments Arguments {@link Bundle} for use when instantiating this tab's content fragment.
+	 * @param factory {@link FragmentFactory} that creates this tab's content fragment, may be <code>null</code>.
+	 */
+	public TabInfo(String tag, Class<?> aClass, Bundle arguments, FragmentFactory factory) {
 		this._tag = tag;
 		this._class = aClass;
 		this._arguments = arguments;
+		this._factory = factory;
 	}
 
 	/**
@@ -66,6 +90,22 @@ public class TabInfo {
 		return this._fragment;
 	}
 	
+	/**
+	 * Gets the {@link FragmentFactory} that creates this tab's content {@link Fragment}.
+	 * @return Content fragment factory, <code>null</code> if the fragment is created from its class.
+	 */
+	public FragmentFactory getFactory() {
+		return this._factory;
+	}
+	
+	/**
+	 * Gets the class of this tab's content {@link Fragment}.
+	 * @return The tab content fragment class.
+	 */
+	public Class<?> getFragmentClass() {
+		return this._class;
+	}
+	
 	/**
 	 * Gets the class name of this tab's content {@link Fragment}. This
 	 * name can be used when instantiating a new instance of the content fragment.
@@ -75,6 +115,48 @@ public class TabInfo {
 		return this._class.getName();
 	}
 	
+	/**
+	 * Gets this tab's stable ID. The ID does not change when the tab moves.
+	 * @return The tab ID.
+	 */
+	public long getId() {
+		return this._id;
+	}
+	
+	/**
+	 * Gets this tab's current position in its adapter.
+	 * @return The tab position, {@link #NO_POSITION} if this tab is not registered.
+	 */
+	public int getPosition() {
+		return this._position;
+	}
+	
+	/**
+	 * Gets the content {@link Fragment} created ahead of time by prefetching,
+	 * not yet handed to the pager.
+	 * @return Prefetched {@link Fragment}, <code>null</code> if there is none.
+	 */
+	Fragment getPrefetchedFragment() {
+		return this._prefetchedFragment;
+	}
+	
+	/**
+	 * Gets the saved state of this tab's content {@link Fragment}, kept while the
+	 * fragment is destroyed by {@link FragmentTabsAdapter}'s state saving window.
+	 * @return Saved fragment state, <code>null</code> if there is none.
+	 */
+	public Fragment.SavedState getSavedState() {
+		return this._savedState;
+	}
+	
+	/**
+	 * Gets the {@link TabSpec} this tab was added with.
+	 * @return The tab spec.
+	 */
+	public TabSpec getTabSpec() {
+		return this._tabSpec;
+	}
+	
 	/**
 	 * Gets this tab's tag.
 	 * @return The tag.
@@ -91,4 +173,44 @@ public class TabInfo {
 		this._fragment = fragment;
 	}
 	
+	/**
+	 * Sets this tab's stable ID.
+	 * @param id ID to use.
+	 */
+	void setId(long id) {
+		this._id = id;
+	}
+	
+	/**
+	 * Sets this tab's current position.
+	 * @param position Position of this tab.
+	 */
+	void setPosition(int position) {
+		this._position = position;
+	}
+	
+	/**
+	 * Sets the content {@link Fragment} created ahead of time by prefetching.
+	 * @param fragment Prefetched {@link Fragment}, may be <code>null</code>.
+	 */
+	void setPrefetchedFragment(Fragment fragment) {
+		this._prefetchedFragment = fragment;
+	}
+	
+	/**
+	 * Sets the saved state of this tab's content {@link Fragment}.
+	 * @param savedState Saved fragment state, may be <code>null</code>.
+	 */
+	void setSavedState(Fragment.SavedState savedState) {
+		this._savedState = savedState;
+	}
+	
+	/**
+	 * Sets the {@link TabSpec} this tab was added with.
+	 * @param tabSpec Tab spec to use.
+	 */
+	void setTabSpec(TabSpec tabSpec) {
+		this._tabSpec = tabSpec;
+	}
+	
 }
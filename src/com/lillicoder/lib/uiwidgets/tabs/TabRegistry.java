@@ -0,0 +1,142 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.tabs;
+
+import junit.framework.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *     Ordered registry of {@link TabInfo} used by {@link FragmentTabsAdapter}.
+ * </p>
+ *
+ * <p>
+ *     Tabs can be looked up by position or by tag in constant time. Each registered
+ *     tab tracks its own position, which is kept current as tabs are inserted,
+ *     removed or moved. Structural changes cost time linear in the number of tabs
+ *     they shift.
+ * </p>
+ */
+class TabRegistry {
+
+	private static final String PRECONDITION_DUPLICATE_TAG =
+		"Cannot register a tab with a tag that is already registered.";
+
+	private static final String PRECONDITION_POSITION_OUT_OF_BOUNDS =
+		"Tab position is out of bounds.";
+
+	private final List<TabInfo> _tabs = new ArrayList<TabInfo>();
+	private final Map<String, TabInfo> _tabsByTag = new HashMap<String, TabInfo>();
+
+	/**
+	 * Gets the number of registered tabs.
+	 * @return Tab count.
+	 */
+	public int size() {
+		return this._tabs.size();
+	}
+
+	/**
+	 * Gets the tab at the given position.
+	 * @param position Position of the tab to get.
+	 * @return {@link TabInfo} at the given position.
+	 */
+	public TabInfo get(int position) {
+		Assert.assertTrue(PRECONDITION_POSITION_OUT_OF_BOUNDS, position >= 0 && position < this._tabs.size());
+		return this._tabs.get(position);
+	}
+
+	/**
+	 * Gets the tab with the given tag.
+	 * @param tag Tag of the tab to get.
+	 * @return {@link TabInfo} with the given tag,
+	 * 		   <code>null</code> if no tab with that tag is registered.
+	 */
+	public TabInfo get(String tag) {
+		return this._tabsByTag.get(tag);
+	}
+
+	/**
+	 * Determines if the given tab is registered.
+	 * @param info Tab to check.
+	 * @return <code>true</code> if the given tab is registered,
+	 * 		   <code>false</code> otherwise.
+	 */
+	public boolean contains(TabInfo info) {
+		return info != null && this._tabsByTag.get(info.getTag()) == info;
+	}
+
+	/**
+	 * Inserts the given tab at the given position.
+	 * @param position Position to insert at, in the range [0,size].
+	 * @param info Tab to insert.
+	 */
+	public void insert(int position, TabInfo info) {
+		Assert.assertTrue(PRECONDITION_POSITION_OUT_OF_BOUNDS, position >= 0 && position <= this._tabs.size());
+		Assert.assertTrue(PRECONDITION_DUPLICATE_TAG, !this._tabsByTag.containsKey(info.getTag()));
+
+		this._tabs.add(position, info);
+		this._tabsByTag.put(info.getTag(), info);
+		this.updatePositions(position, this._tabs.size() - 1);
+	}
+
+	/**
+	 * Removes the tab at the given position.
+	 * @param position Position of the tab to remove.
+	 * @return Removed {@link TabInfo}.
+	 */
+	public TabInfo remove(int position) {
+		Assert.assertTrue(PRECONDITION_POSITION_OUT_OF_BOUNDS, position >= 0 && position < this._tabs.size());
+
+		TabInfo info = this._tabs.remove(position);
+		this._tabsByTag.remove(info.getTag());
+		info.setPosition(TabInfo.NO_POSITION);
+		this.updatePositions(position, this._tabs.size() - 1);
+
+		return info;
+	}
+
+	/**
+	 * Moves the tab at the given position to another position.
+	 * @param fromPosition Current position of the tab.
+	 * @param toPosition New position of the tab.
+	 */
+	public void move(int fromPosition, int toPosition) {
+		Assert.assertTrue(PRECONDITION_POSITION_OUT_OF_BOUNDS, fromPosition >= 0 && fromPosition < this._tabs.size());
+		Assert.assertTrue(PRECONDITION_POSITION_OUT_OF_BOUNDS, toPosition >= 0 && toPosition < this._tabs.size());
+
+		TabInfo info = this._tabs.remove(fromPosition);
+		this._tabs.add(toPosition, info);
+		this.updatePositions(Math.min(fromPosition, toPosition), Math.max(fromPosition, toPosition));
+	}
+
+	/**
+	 * Updates the stored position of every tab in the given range.
+	 * @param start First position to update.
+	 * @param end Last position to update, inclusive.
+	 */
+	private void updatePositions(int start, int end) {
+		for (int position = start; position <= end; position++) {
+			this._tabs.get(position).setPosition(position);
+		}
+	}
+
+}
@@ -0,0 +1,274 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.tabs;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+import com.lillicoder.lib.uiwidgets.util.Histogram;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ *     Opt-in instrumentation that measures how long {@link FragmentTabsAdapter} takes to switch tabs.
+ * </p>
+ *
+ * <p>
+ *     A switch starts when a tab is tapped or a swipe starts, includes the time spent
+ *     instantiating fragments in {@link FragmentTabsAdapter#getItem(int)} and ends at the
+ *     first draw of the pager once the new tab is selected and the pager has settled on it.
+ *     Latencies are kept in one {@link Histogram} per tab tag.
+ * </p>
+ *
+ * <p>
+ *     The monitor also counts redundant round-trips: calls from the pager or the tab host
+ *     asking the other side to move to the position it already shows. The echo of the
+ *     adapter's own {@link android.widget.TabHost#setCurrentTab(int)} or
+ *     {@link android.support.v4.view.ViewPager#setCurrentItem(int)} call is expected and not counted.
+ * </p>
+ */
+public class TabSwitchMonitor {
+
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private static final long NO_TIMESTAMP = -1;
+
+	/**
+	 * Listener notified each time a tab switch has been measured. The monitor passed to it
+	 * holds the latency histograms and the redundant round-trip count.
+	 */
+	public interface OnTabSwitchMetricsListener {
+
+		/**
+		 * Called after a switch to the tab with the given tag has been measured.
+		 * @param monitor Monitor holding the accumulated metrics.
+		 * @param tag Tag of the tab that was switched to.
+		 */
+		public void onTabSwitchMeasured(TabSwitchMonitor monitor, String tag);
+
+	}
+
+	private final View _view;
+
+	private final Map<String, Histogram> _latencies = new HashMap<String, Histogram>();
+	private final Map<String, Histogram> _instantiationTimes = new HashMap<String, Histogram>();
+
+	private OnTabSwitchMetricsListener _listener;
+
+	private long _startTimestampNanos = NO_TIMESTAMP;
+	private long _instantiationNanos;
+	private String _targetTag;
+	private boolean _isWaitingForDraw;
+	private long _redundantRoundTripCount;
+
+	/**
+	 * {@link ViewTreeObserver.OnPreDrawListener} that ends a switch at the first draw
+	 * after the new tab is selected.
+	 */
+	private final ViewTreeObserver.OnPreDrawListener _drawListener = new ViewTreeObserver.OnPreDrawListener() {
+		@Override
+		public boolean onPreDraw() {
+			TabSwitchMonitor.this.onFirstDraw();
+			return true;
+		}
+	};
+
+	/**
+	 * Instantiates this monitor.
+	 * @param view Pager whose draws mark a tab as shown.
+	 */
+	TabSwitchMonitor(View view) {
+		this._view = view;
+	}
+
+	/**
+	 * Sets the listener to notify when a switch has been measured.
+	 * @param listener Listener to set, may be <code>null</code>.
+	 */
+	public void setOnTabSwitchMetricsListener(OnTabSwitchMetricsListener listener) {
+		this._listener = listener;
+	}
+
+	/**
+	 * Gets the tags of the tabs that have recorded switches.
+	 * @return Unmodifiable set of tab tags.
+	 */
+	public Set<String> getTags() {
+		return Collections.unmodifiableSet(this._latencies.keySet());
+	}
+
+	/**
+	 * Gets the histogram of switch latencies, in milliseconds, for the tab with the given tag.
+	 * @param tag Tag of the tab.
+	 * @return Latency histogram, <code>null</code> if no switch to that tab was measured.
+	 */
+	public Histogram getLatencies(String tag) {
+		return this._latencies.get(tag);
+	}
+
+	/**
+	 * Gets the histogram of time, in milliseconds, spent instantiating fragments during
+	 * switches to the tab with the given tag.
+	 * @param tag Tag of the tab.
+	 * @return Instantiation time histogram, <code>null</code> if no switch to that tab was measured.
+	 */
+	public Histogram getInstantiationTimes(String tag) {
+		return this._instantiationTimes.get(tag);
+	}
+
+	/**
+	 * Gets the number of redundant current tab or current item round-trips between the
+	 * tab host and the pager.
+	 * @return Redundant round-trip count.
+	 */
+	public long getRedundantRoundTripCount() {
+		return this._redundantRoundTripCount;
+	}
+
+	/**
+	 * Clears all accumulated metrics.
+	 */
+	public void reset() {
+		this._latencies.clear();
+		this._instantiationTimes.clear();
+		this._redundantRoundTripCount = 0;
+	}
+
+	/**
+	 * Marks the start of a switch. Ignored if a switch is already in flight.
+	 */
+	void onSwitchStarted() {
+		if (this._startTimestampNanos != NO_TIMESTAMP)
+			return;
+
+		this._startTimestampNanos = System.nanoTime();
+		this._instantiationNanos = 0;
+	}
+
+	/**
+	 * Marks the pager as settled. The in-flight switch ends at the next draw if a new tab was
+	 * selected, and is abandoned otherwise, e.g. when a swipe settles back on the same tab.
+	 */
+	void onScrollIdle() {
+		if (this._isWaitingForDraw || this._startTimestampNanos == NO_TIMESTAMP)
+			return;
+
+		if (this._targetTag != null) {
+			this.waitForDraw();
+			
+			// Make sure a frame follows even if settling invalidated nothing
+			this._view.invalidate();
+		} else {
+			this._startTimestampNanos = NO_TIMESTAMP;
+		}
+	}
+
+	/**
+	 * Adds fragment instantiation time to the in-flight switch.
+	 * @param nanos Time spent instantiating, in nanoseconds.
+	 */
+	void onFragmentInstantiated(long nanos) {
+		if (this._startTimestampNanos != NO_TIMESTAMP)
+			this._instantiationNanos += nanos;
+	}
+
+	/**
+	 * Marks the tab that the in-flight switch goes to. The switch ends at the first draw
+	 * after the pager settles.
+	 * @param tag Tag of the selected tab.
+	 * @param isSettled <code>true</code> if the pager jumped to the tab without scrolling,
+	 * 					<code>false</code> if it is still scrolling towards it.
+	 */
+	void onTabSelected(String tag, boolean isSettled) {
+		if (this._startTimestampNanos == NO_TIMESTAMP)
+			return;
+
+		this._targetTag = tag;
+		if (isSettled)
+			this.waitForDraw();
+	}
+
+	/**
+	 * Counts a redundant round-trip between the tab host and the pager.
+	 */
+	void onRedundantRoundTrip() {
+		this._redundantRoundTripCount++;
+	}
+
+	/**
+	 * Stops any in-flight measurement without recording it.
+	 */
+	void stop() {
+		if (this._isWaitingForDraw) {
+			this._view.getViewTreeObserver().removeOnPreDrawListener(this._drawListener);
+			this._isWaitingForDraw = false;
+		}
+
+		this._startTimestampNanos = NO_TIMESTAMP;
+		this._targetTag = null;
+	}
+
+	/**
+	 * Ends the in-flight switch at the next draw of the pager.
+	 */
+	private void waitForDraw() {
+		if (this._isWaitingForDraw)
+			return;
+
+		this._isWaitingForDraw = true;
+		this._view.getViewTreeObserver().addOnPreDrawListener(this._drawListener);
+	}
+
+	/**
+	 * Ends the in-flight switch and records it.
+	 */
+	private void onFirstDraw() {
+		long latencyNanos = System.nanoTime() - this._startTimestampNanos;
+		String tag = this._targetTag;
+
+		this._view.getViewTreeObserver().removeOnPreDrawListener(this._drawListener);
+		this._isWaitingForDraw = false;
+		this._startTimestampNanos = NO_TIMESTAMP;
+		this._targetTag = null;
+
+		getHistogram(this._latencies, tag).record(latencyNanos / NANOS_PER_MILLI);
+		getHistogram(this._instantiationTimes, tag).record(this._instantiationNanos / NANOS_PER_MILLI);
+
+		if (this._listener != null)
+			this._listener.onTabSwitchMeasured(this, tag);
+	}
+
+	/**
+	 * Gets the histogram for the given tag, creating it if needed.
+	 * @param histograms Histograms by tab tag.
+	 * @param tag Tag of the tab.
+	 * @return Histogram for the given tag.
+	 */
+	private static Histogram getHistogram(Map<String, Histogram> histograms, String tag) {
+		Histogram histogram = histograms.get(tag);
+		if (histogram == null) {
+			histogram = new Histogram(Histogram.LATENCY_BOUNDS_MILLIS);
+			histograms.put(tag, histogram);
+		}
+
+		return histogram;
+	}
+
+}
@@ -0,0 +1,383 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.util;
+
+import junit.framework.Assert;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     Fixed-size bit set split into chunks of {@value #CHUNK_BITS} bits.
+ * </p>
+ *
+ * <p>
+ *     Empty chunks hold no words and full chunks share a single marker, so large runs of
+ *     set or cleared bits cost one reference per chunk. Setting or clearing a range only
+ *     touches the words of the chunks at its ends. Each chunk keeps its own cardinality,
+ *     which makes counting the set bits of a range proportional to the number of chunks
+ *     it spans rather than the number of bits.
+ * </p>
+ */
+public class CompressedBitSet {
+
+    private static final String PRECONDITION_NEGATIVE_SIZE =
+        "Cannot create a bit set with a negative size.";
+
+    private static final String PRECONDITION_INDEX_OUT_OF_BOUNDS =
+        "Bit index is out of bounds.";
+
+    private static final String PRECONDITION_INVALID_RANGE =
+        "Bit range is out of bounds.";
+
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+
+    private static final int ADDRESS_BITS_PER_CHUNK = 12;
+    public static final int CHUNK_BITS = 1 << ADDRESS_BITS_PER_CHUNK;
+    private static final int WORDS_PER_CHUNK = CHUNK_BITS / BITS_PER_WORD;
+
+    /**
+     * Marker for chunks with every bit set. Never written to.
+     */
+    private static final long[] FULL_CHUNK = new long[0];
+
+    private final int mSize;
+    private final long[][] mChunks;
+    private final int[] mChunkCardinalities;
+
+    private int mCardinality;
+
+    /**
+     * Instantiates this bit set with every bit cleared.
+     * @param size Number of bits.
+     */
+    public CompressedBitSet(int size) {
+        Assert.assertTrue(PRECONDITION_NEGATIVE_SIZE, size >= 0);
+
+        mSize = size;
+
+        int chunkCount = (size + CHUNK_BITS - 1) >> ADDRESS_BITS_PER_CHUNK;
+        mChunks = new long[chunkCount][];
+        mChunkCardinalities = new int[chunkCount];
+    }
+
+    /**
+     * Gets the number of bits in this set.
+     * @return Bit count.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Gets the number of set bits.
+     * @return Set bit count.
+     */
+    public int cardinality() {
+        return mCardinality;
+    }
+
+    /**
+     * Gets the number of set bits in the given range.
+     * @param from Inclusive start index.
+     * @param to Exclusive end index.
+     * @return Set bit count of the range.
+     */
+    public int cardinality(int from, int to) {
+        checkRange(from, to);
+
+        int count = 0;
+        int index = from;
+        while (index < to) {
+            int chunk = index >> ADDRESS_BITS_PER_CHUNK;
+            int chunkStart = chunk << ADDRESS_BITS_PER_CHUNK;
+            int chunkEnd = Math.min(to, chunkStart + CHUNK_BITS);
+
+            long[] words = mChunks[chunk];
+            if (index == chunkStart && chunkEnd == chunkStart + getChunkLength(chunk)) {
+                count += mChunkCardinalities[chunk];
+            } else if (words == FULL_CHUNK) {
+                count += chunkEnd - index;
+            } else if (words != null) {
+                count += countWords(words, index - chunkStart, chunkEnd - chunkStart);
+            }
+
+            index = chunkEnd;
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the bit at the given index.
+     * @param index Bit index.
+     * @return {@code true} if the bit is set, {@code false} otherwise.
+     */
+    public boolean get(int index) {
+        checkIndex(index);
+
+        long[] words = mChunks[index >> ADDRESS_BITS_PER_CHUNK];
+        if (words == null) {
+            return false;
+        }
+
+        if (words == FULL_CHUNK) {
+            return true;
+        }
+
+        int bit = index & (CHUNK_BITS - 1);
+        return (words[bit >> ADDRESS_BITS_PER_WORD] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Sets or clears the bit at the given index.
+     * @param index Bit index.
+     * @param value {@code true} to set the bit, {@code false} to clear it.
+     * @return {@code true} if the bit changed, {@code false} otherwise.
+     */
+    public boolean set(int index, boolean value) {
+        if (get(index) == value) {
+            return false;
+        }
+
+        int chunk = index >> ADDRESS_BITS_PER_CHUNK;
+        long[] words = getMutableWords(chunk);
+
+        int bit = index & (CHUNK_BITS - 1);
+        words[bit >> ADDRESS_BITS_PER_WORD] ^= 1L << bit;
+
+        int delta = value ? 1 : -1;
+        mCardinality += delta;
+        mChunkCardinalities[chunk] += delta;
+        compactChunk(chunk);
+
+        return true;
+    }
+
+    /**
+     * Sets or clears every bit in the given range.
+     * @param from Inclusive start index.
+     * @param to Exclusive end index.
+     * @param value {@code true} to set the bits, {@code false} to clear them.
+     */
+    public void set(int from, int to, boolean value) {
+        checkRange(from, to);
+
+        int index = from;
+        while (index < to) {
+            int chunk = index >> ADDRESS_BITS_PER_CHUNK;
+            int chunkStart = chunk << ADDRESS_BITS_PER_CHUNK;
+            int chunkLength = getChunkLength(chunk);
+            int chunkEnd = Math.min(to, chunkStart + CHUNK_BITS);
+
+            int oldCardinality = mChunkCardinalities[chunk];
+            if (index == chunkStart && chunkEnd == chunkStart + chunkLength) {
+                // Whole chunk, swap in a marker
+                mChunks[chunk] = value ? FULL_CHUNK : null;
+                mChunkCardinalities[chunk] = value ? chunkLength : 0;
+            } else if (mChunks[chunk] != (value ? FULL_CHUNK : null)) {
+                long[] words = getMutableWords(chunk);
+                fillWords(words, index - chunkStart, chunkEnd - chunkStart, value);
+                mChunkCardinalities[chunk] = countWords(words, 0, chunkLength);
+                compactChunk(chunk);
+            }
+
+            mCardinality += mChunkCardinalities[chunk] - oldCardinality;
+            index = chunkEnd;
+        }
+    }
+
+    /**
+     * Clears every bit.
+     */
+    public void clear() {
+        Arrays.fill(mChunks, null);
+        Arrays.fill(mChunkCardinalities, 0);
+        mCardinality = 0;
+    }
+
+    /**
+     * Gets the index of the first set bit at or after the given index.
+     * @param from Index to start searching from.
+     * @return Index of the next set bit, {@code -1} if there is none.
+     */
+    public int nextSetBit(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+
+        int index = from;
+        while (index < mSize) {
+            int chunk = index >> ADDRESS_BITS_PER_CHUNK;
+            int chunkStart = chunk << ADDRESS_BITS_PER_CHUNK;
+            long[] words = mChunks[chunk];
+
+            if (words == FULL_CHUNK) {
+                return index;
+            }
+
+            if (words != null) {
+                int bit = index - chunkStart;
+                int wordIndex = bit >> ADDRESS_BITS_PER_WORD;
+                long word = words[wordIndex] & (-1L << bit);
+                while (true) {
+                    if (word != 0) {
+                        return chunkStart + (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+                    }
+
+                    if (++wordIndex == WORDS_PER_CHUNK) {
+                        break;
+                    }
+
+                    word = words[wordIndex];
+                }
+            }
+
+            index = chunkStart + CHUNK_BITS;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets the words of the given chunk, expanding empty or full markers into words.
+     * @param chunk Chunk index.
+     * @return Writable words of the chunk.
+     */
+    private long[] getMutableWords(int chunk) {
+        long[] words = mChunks[chunk];
+        if (words == null) {
+            words = new long[WORDS_PER_CHUNK];
+            mChunks[chunk] = words;
+        } else if (words == FULL_CHUNK) {
+            words = new long[WORDS_PER_CHUNK];
+            fillWords(words, 0, getChunkLength(chunk), true);
+            mChunks[chunk] = words;
+        }
+
+        return words;
+    }
+
+    /**
+     * Replaces the words of the given chunk with a marker if the chunk is empty or full.
+     * @param chunk Chunk index.
+     */
+    private void compactChunk(int chunk) {
+        int cardinality = mChunkCardinalities[chunk];
+        if (cardinality == 0) {
+            mChunks[chunk] = null;
+        } else if (cardinality == getChunkLength(chunk)) {
+            mChunks[chunk] = FULL_CHUNK;
+        }
+    }
+
+    /**
+     * Gets the number of bits in the given chunk, which is less than {@link #CHUNK_BITS}
+     * only for the last chunk.
+     * @param chunk Chunk index.
+     * @return Bit count of the chunk.
+     */
+    private int getChunkLength(int chunk) {
+        return Math.min(CHUNK_BITS, mSize - (chunk << ADDRESS_BITS_PER_CHUNK));
+    }
+
+    /**
+     * Sets or clears the given range of bits of a chunk's words.
+     * @param words Chunk words.
+     * @param from Inclusive start bit within the chunk.
+     * @param to Exclusive end bit within the chunk.
+     * @param value {@code true} to set the bits, {@code false} to clear them.
+     */
+    private static void fillWords(long[] words, int from, int to, boolean value) {
+        if (from >= to) {
+            return;
+        }
+
+        int firstWord = from >> ADDRESS_BITS_PER_WORD;
+        int lastWord = (to - 1) >> ADDRESS_BITS_PER_WORD;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+
+        for (int wordIndex = firstWord; wordIndex <= lastWord; wordIndex++) {
+            long mask = -1L;
+            if (wordIndex == firstWord) {
+                mask &= firstMask;
+            }
+            if (wordIndex == lastWord) {
+                mask &= lastMask;
+            }
+
+            if (value) {
+                words[wordIndex] |= mask;
+            } else {
+                words[wordIndex] &= ~mask;
+            }
+        }
+    }
+
+    /**
+     * Counts the set bits in the given range of a chunk's words.
+     * @param words Chunk words.
+     * @param from Inclusive start bit within the chunk.
+     * @param to Exclusive end bit within the chunk.
+     * @return Set bit count of the range.
+     */
+    private static int countWords(long[] words, int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+
+        int firstWord = from >> ADDRESS_BITS_PER_WORD;
+        int lastWord = (to - 1) >> ADDRESS_BITS_PER_WORD;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+
+        int count = 0;
+        for (int wordIndex = firstWord; wordIndex <= lastWord; wordIndex++) {
+            long mask = -1L;
+            if (wordIndex == firstWord) {
+                mask &= firstMask;
+            }
+            if (wordIndex == lastWord) {
+                mask &= lastMask;
+            }
+
+            count += Long.bitCount(words[wordIndex] & mask);
+        }
+
+        return count;
+    }
+
+    /**
+     * Asserts that the given index is in range.
+     * @param index Index to check.
+     */
+    private void checkIndex(int index) {
+        Assert.assertTrue(PRECONDITION_INDEX_OUT_OF_BOUNDS, index >= 0 && index < mSize);
+    }
+
+    /**
+     * Asserts that the given range is valid.
+     * @param from Inclusive start index.
+     * @param to Exclusive end index.
+     */
+    private void checkRange(int from, int to) {
+        Assert.assertTrue(PRECONDITION_INVALID_RANGE, from >= 0 && from <= to && to <= mSize);
+    }
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.util;
+
+import junit.framework.Assert;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     Fixed-bucket histogram of non-negative values.
+ * </p>
+ *
+ * <p>
+ *     Each bucket counts the values less than or equal to its upper bound and greater
+ *     than the previous bucket's upper bound. Values greater than the last bound are
+ *     counted in a trailing overflow bucket. Recording a value does not allocate.
+ * </p>
+ */
+public class Histogram {
+
+    private static final String PRECONDITION_NO_BOUNDS =
+        "Cannot instantiate a histogram without bucket bounds.";
+
+    private static final String PRECONDITION_UNSORTED_BOUNDS =
+        "Histogram bucket bounds must be strictly increasing.";
+
+    private static final String PRECONDITION_MISMATCHED_BOUNDS =
+        "Cannot add histograms with different bucket bounds.";
+
+    private static final String PRECONDITION_INVALID_PERCENTILE =
+        "Percentile must be in the range [0,100].";
+
+    /**
+     * Bucket bounds, in milliseconds, suited to frame and latency timings.
+     */
+    public static final long[] LATENCY_BOUNDS_MILLIS =
+        { 1, 2, 4, 8, 12, 16, 20, 25, 33, 50, 67, 100, 150, 250, 500, 1000 };
+
+    /**
+     * Bucket bounds suited to small counts.
+     */
+    public static final long[] COUNT_BOUNDS =
+        { 0, 1, 2, 3, 4, 5, 6, 8, 10, 15, 20, 50 };
+
+    private final long[] mUpperBounds;
+    private final long[] mCounts;
+
+    private long mTotalCount;
+    private long mSum;
+    private long mMax;
+
+    /**
+     * Instantiates this histogram with the given bucket upper bounds.
+     * @param upperBounds Strictly increasing bucket upper bounds.
+     */
+    public Histogram(long[] upperBounds) {
+        Assert.assertTrue(PRECONDITION_NO_BOUNDS, upperBounds != null && upperBounds.length > 0);
+        for (int i = 1; i < upperBounds.length; i++) {
+            Assert.assertTrue(PRECONDITION_UNSORTED_BOUNDS, upperBounds[i] > upperBounds[i - 1]);
+        }
+
+        mUpperBounds = upperBounds.clone();
+        mCounts = new long[upperBounds.length + 1]; // Trailing overflow bucket
+    }
+
+    /**
+     * Records the given value.
+     * @param value Value to record.
+     */
+    public void record(long value) {
+        int bucket = 0;
+        while (bucket < mUpperBounds.length && value > mUpperBounds[bucket]) {
+            bucket++;
+        }
+
+        mCounts[bucket]++;
+        mTotalCount++;
+        mSum += value;
+        if (value > mMax) {
+            mMax = value;
+        }
+    }
+
+    /**
+     * Adds all values recorded by the given histogram to this histogram. Both
+     * histograms must share the same bucket bounds.
+     * @param other Histogram to add.
+     */
+    public void add(Histogram other) {
+        Assert.assertTrue(PRECONDITION_MISMATCHED_BOUNDS, Arrays.equals(mUpperBounds, other.mUpperBounds));
+
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] += other.mCounts[i];
+        }
+
+        mTotalCount += other.mTotalCount;
+        mSum += other.mSum;
+        mMax = Math.max(mMax, other.mMax);
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+
+        mTotalCount = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+
+    /**
+     * Gets the number of buckets in this histogram, including the overflow bucket.
+     * @return Number of buckets.
+     */
+    public int getBucketCount() {
+        return mCounts.length;
+    }
+
+    /**
+     * Gets the upper bound of the given bucket.
+     * @param bucket Bucket to get the upper bound of.
+     * @return Bucket upper bound, {@link Long#MAX_VALUE} for the overflow bucket.
+     */
+    public long getUpperBound(int bucket) {
+        return bucket < mUpperBounds.length ? mUpperBounds[bucket] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets the number of values recorded in the given bucket.
+     * @param bucket Bucket to get the count of.
+     * @return Bucket count.
+     */
+    public long getCount(int bucket) {
+        return mCounts[bucket];
+    }
+
+    /**
+     * Gets the number of values recorded in this histogram.
+     * @return Total count.
+     */
+    public long getTotalCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * Gets the largest value recorded in this histogram.
+     * @return Largest value, {@code 0} if nothing has been recorded.
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    /**
+     * Gets the mean of the values recorded in this histogram.
+     * @return Mean value, {@code 0} if nothing has been recorded.
+     */
+    public double getMean() {
+        return mTotalCount == 0 ? 0 : (double) mSum / mTotalCount;
+    }
+
+    /**
+     * Gets the upper bound of the bucket containing the given percentile. For the
+     * overflow bucket the largest recorded value is returned instead.
+     * @param percentile Percentile in the range [0,100].
+     * @return Approximate value at the given percentile, {@code 0} if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        Assert.assertTrue(PRECONDITION_INVALID_PERCENTILE, percentile >= 0 && percentile <= 100);
+        if (mTotalCount == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(mTotalCount * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < mCounts.length; bucket++) {
+            seen += mCounts[bucket];
+            if (seen >= target && mCounts[bucket] > 0) {
+                return bucket < mUpperBounds.length ? mUpperBounds[bucket] : mMax;
+            }
+        }
+
+        return mMax;
+    }
+
+}
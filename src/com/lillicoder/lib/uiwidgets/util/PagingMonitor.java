@@ -0,0 +1,308 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.util;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.v4.view.ViewPager;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import junit.framework.Assert;
+
+/**
+ * <p>
+ *     Opt-in instrumentation that measures how smoothly a {@link ViewPager} pages.
+ * </p>
+ *
+ * <p>
+ *     Owners forward their pager's scroll state changes, page selections and page
+ *     instantiations to this monitor. For every swipe, from drag start until the pager
+ *     settles, the monitor records:
+ *     <ul>
+ *         <li>frame intervals, via {@link Choreographer} (API 16 and up only),</li>
+ *         <li>time from page selection to the first draw of the pager afterwards,</li>
+ *         <li>the number of pages instantiated during the swipe.</li>
+ *     </ul>
+ *     Values are accumulated in {@link Histogram}s and reported through
+ *     {@link OnPagingMetricsListener} each time a swipe settles.
+ * </p>
+ */
+public class PagingMonitor {
+
+    private static final String PRECONDITION_NULL_VIEW =
+        "Cannot monitor paging without a view to observe draws on.";
+
+    /**
+     * Frame intervals longer than this are counted as janky frames. This is one and a half
+     * 60Hz vsync periods, i.e. at least one vsync was missed.
+     */
+    private static final long JANK_FRAME_INTERVAL_NANOS = 25000000L;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private static final long NO_TIMESTAMP = -1;
+
+    /**
+     * Listener notified each time a monitored swipe settles.
+     */
+    public interface OnPagingMetricsListener {
+
+        /**
+         * Called after a swipe settles and its metrics have been recorded.
+         * @param monitor Monitor holding the accumulated metrics.
+         */
+        public void onSwipeMeasured(PagingMonitor monitor);
+
+    }
+
+    private final View mView;
+
+    private final Histogram mFrameIntervals = new Histogram(Histogram.LATENCY_BOUNDS_MILLIS);
+    private final Histogram mSelectToDrawLatencies = new Histogram(Histogram.LATENCY_BOUNDS_MILLIS);
+    private final Histogram mInstantiationsPerSwipe = new Histogram(Histogram.COUNT_BOUNDS);
+
+    private FrameTimer mFrameTimer;
+    private OnPagingMetricsListener mListener;
+
+    private boolean mIsSwiping;
+    private int mSwipeInstantiations;
+    private long mSwipeCount;
+    private long mJankFrameCount;
+
+    private long mSelectTimestampNanos = NO_TIMESTAMP;
+
+    /**
+     * {@link ViewTreeObserver.OnPreDrawListener} that records the time from page
+     * selection to the next draw.
+     */
+    private final ViewTreeObserver.OnPreDrawListener mSelectDrawListener =
+        new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                mView.getViewTreeObserver().removeOnPreDrawListener(this);
+                if (mSelectTimestampNanos != NO_TIMESTAMP) {
+                    long latency = System.nanoTime() - mSelectTimestampNanos;
+                    mSelectToDrawLatencies.record(latency / NANOS_PER_MILLI);
+                    mSelectTimestampNanos = NO_TIMESTAMP;
+                }
+
+                return true;
+            }
+        };
+
+    /**
+     * Instantiates this monitor.
+     * @param view Pager, or a view in the same window, whose draws mark a page as shown.
+     */
+    public PagingMonitor(View view) {
+        Assert.assertTrue(PRECONDITION_NULL_VIEW, view != null);
+
+        mView = view;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameTimer = new FrameTimer(this);
+        }
+    }
+
+    /**
+     * Sets the listener to notify when a swipe has been measured.
+     * @param listener Listener to set, may be {@code null}.
+     */
+    public void setOnPagingMetricsListener(OnPagingMetricsListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Forwards a pager scroll state change to this monitor.
+     * @param state New scroll state, one of {@link ViewPager#SCROLL_STATE_IDLE},
+     *              {@link ViewPager#SCROLL_STATE_DRAGGING} or {@link ViewPager#SCROLL_STATE_SETTLING}.
+     */
+    public void onPageScrollStateChanged(int state) {
+        if (state == ViewPager.SCROLL_STATE_DRAGGING && !mIsSwiping) {
+            mIsSwiping = true;
+            mSwipeInstantiations = 0;
+            if (mFrameTimer != null) {
+                mFrameTimer.start();
+            }
+        } else if (state == ViewPager.SCROLL_STATE_IDLE && mIsSwiping) {
+            mIsSwiping = false;
+            if (mFrameTimer != null) {
+                mFrameTimer.stop();
+            }
+
+            mInstantiationsPerSwipe.record(mSwipeInstantiations);
+            mSwipeCount++;
+
+            if (mListener != null) {
+                mListener.onSwipeMeasured(this);
+            }
+        }
+    }
+
+    /**
+     * Forwards a page selection to this monitor.
+     * @param position Selected position.
+     */
+    public void onPageSelected(int position) {
+        if (mSelectTimestampNanos == NO_TIMESTAMP) {
+            mView.getViewTreeObserver().addOnPreDrawListener(mSelectDrawListener);
+        }
+
+        mSelectTimestampNanos = System.nanoTime();
+        mView.invalidate();
+    }
+
+    /**
+     * Notifies this monitor that the pager instantiated a page.
+     */
+    public void onPageInstantiated() {
+        if (mIsSwiping) {
+            mSwipeInstantiations++;
+        }
+    }
+
+    /**
+     * Stops any in-flight measurement without recording it.
+     */
+    public void stop() {
+        mIsSwiping = false;
+        if (mFrameTimer != null) {
+            mFrameTimer.stop();
+        }
+
+        if (mSelectTimestampNanos != NO_TIMESTAMP) {
+            mView.getViewTreeObserver().removeOnPreDrawListener(mSelectDrawListener);
+            mSelectTimestampNanos = NO_TIMESTAMP;
+        }
+    }
+
+    /**
+     * Clears all accumulated metrics.
+     */
+    public void reset() {
+        mFrameIntervals.reset();
+        mSelectToDrawLatencies.reset();
+        mInstantiationsPerSwipe.reset();
+        mSwipeCount = 0;
+        mJankFrameCount = 0;
+    }
+
+    /**
+     * Gets the histogram of frame intervals, in milliseconds, recorded during swipes.
+     * This histogram stays empty below API 16.
+     * @return Frame interval histogram.
+     */
+    public Histogram getFrameIntervals() {
+        return mFrameIntervals;
+    }
+
+    /**
+     * Gets the histogram of times, in milliseconds, from page selection to first draw.
+     * @return Select-to-draw latency histogram.
+     */
+    public Histogram getSelectToDrawLatencies() {
+        return mSelectToDrawLatencies;
+    }
+
+    /**
+     * Gets the histogram of the number of pages instantiated per swipe.
+     * @return Instantiations per swipe histogram.
+     */
+    public Histogram getInstantiationsPerSwipe() {
+        return mInstantiationsPerSwipe;
+    }
+
+    /**
+     * Gets the number of frames recorded during swipes that missed at least one vsync.
+     * @return Janky frame count.
+     */
+    public long getJankFrameCount() {
+        return mJankFrameCount;
+    }
+
+    /**
+     * Gets the number of swipes measured.
+     * @return Swipe count.
+     */
+    public long getSwipeCount() {
+        return mSwipeCount;
+    }
+
+    /**
+     * Records the given frame interval.
+     * @param intervalNanos Frame interval in nanoseconds.
+     */
+    private void recordFrameInterval(long intervalNanos) {
+        mFrameIntervals.record(intervalNanos / NANOS_PER_MILLI);
+        if (intervalNanos > JANK_FRAME_INTERVAL_NANOS) {
+            mJankFrameCount++;
+        }
+    }
+
+    /**
+     * {@link Choreographer.FrameCallback} that measures intervals between consecutive frames.
+     * Kept in its own class so that {@link PagingMonitor} loads on devices without
+     * {@link Choreographer}.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameTimer implements Choreographer.FrameCallback {
+
+        private final PagingMonitor mMonitor;
+
+        private boolean mIsRunning;
+        private long mLastFrameTimeNanos = NO_TIMESTAMP;
+
+        public FrameTimer(PagingMonitor monitor) {
+            mMonitor = monitor;
+        }
+
+        public void start() {
+            if (mIsRunning) {
+                return;
+            }
+
+            mIsRunning = true;
+            mLastFrameTimeNanos = NO_TIMESTAMP;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        public void stop() {
+            if (!mIsRunning) {
+                return;
+            }
+
+            mIsRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!mIsRunning) {
+                return;
+            }
+
+            if (mLastFrameTimeNanos != NO_TIMESTAMP) {
+                mMonitor.recordFrameInterval(frameTimeNanos - mLastFrameTimeNanos);
+            }
+
+            mLastFrameTimeNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.util;
+
+import junit.framework.Assert;
+
+/**
+ * <p>
+ *     Binary indexed (Fenwick) tree over non-negative integer values.
+ * </p>
+ *
+ * <p>
+ *     Supports updating a single value, getting the sum of a prefix of values and finding
+ *     the index that contains a given offset into the running sum, all in O(log n).
+ *     Building the tree from an array of values takes O(n).
+ * </p>
+ */
+public class PrefixSumTree {
+
+    private static final String PRECONDITION_NULL_VALUES =
+        "Cannot build a prefix sum tree from null values.";
+
+    private static final String PRECONDITION_INDEX_OUT_OF_BOUNDS =
+        "Prefix sum tree index is out of bounds.";
+
+    private static final String PRECONDITION_NEGATIVE_VALUE =
+        "Prefix sum tree values must not be negative.";
+
+    private final int[] mTree; // One-based, mTree[0] is unused
+    private final int[] mValues;
+    private final int mHighestPowerOfTwo;
+
+    private int mTotal;
+
+    /**
+     * Instantiates this tree over the given values.
+     * @param values Initial values.
+     */
+    public PrefixSumTree(int[] values) {
+        Assert.assertTrue(PRECONDITION_NULL_VALUES, values != null);
+
+        mValues = values.clone();
+        mTree = new int[values.length + 1];
+
+        int highest = 1;
+        while (highest <= values.length) {
+            highest <<= 1;
+        }
+        mHighestPowerOfTwo = highest >> 1;
+
+        rebuild();
+    }
+
+    /**
+     * Gets the number of values in this tree.
+     * @return Value count.
+     */
+    public int size() {
+        return mValues.length;
+    }
+
+    /**
+     * Gets the value at the given index.
+     * @param index Index of the value.
+     * @return Value at the given index.
+     */
+    public int get(int index) {
+        checkIndex(index);
+        return mValues[index];
+    }
+
+    /**
+     * Sets the value at the given index.
+     * @param index Index of the value.
+     * @param value New value.
+     */
+    public void set(int index, int value) {
+        checkIndex(index);
+        Assert.assertTrue(PRECONDITION_NEGATIVE_VALUE, value >= 0);
+
+        int delta = value - mValues[index];
+        if (delta == 0) {
+            return;
+        }
+
+        mValues[index] = value;
+        mTotal += delta;
+        for (int node = index + 1; node < mTree.length; node += node & -node) {
+            mTree[node] += delta;
+        }
+    }
+
+    /**
+     * Sets every value at once and rebuilds the tree in a single pass.
+     * @param values New values, must have {@link #size()} elements.
+     */
+    public void setAll(int[] values) {
+        Assert.assertTrue(PRECONDITION_NULL_VALUES, values != null && values.length == mValues.length);
+
+        System.arraycopy(values, 0, mValues, 0, values.length);
+        rebuild();
+    }
+
+    /**
+     * Gets the sum of the values before the given index.
+     * @param index Exclusive end index, in the range [0,size].
+     * @return Sum of the values in [0,index).
+     */
+    public int getPrefixSum(int index) {
+        Assert.assertTrue(PRECONDITION_INDEX_OUT_OF_BOUNDS, index >= 0 && index <= mValues.length);
+
+        int sum = 0;
+        for (int node = index; node > 0; node -= node & -node) {
+            sum += mTree[node];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Gets the sum of all values.
+     * @return Total sum.
+     */
+    public int getTotal() {
+        return mTotal;
+    }
+
+    /**
+     * Finds the index whose range of the running sum contains the given offset, i.e. the
+     * largest index whose prefix sum is less than or equal to the offset. Zero values have
+     * empty ranges and are never returned.
+     * @param offset Offset into the running sum, in the range [0,total).
+     * @return Index containing the offset, {@code -1} if the offset is out of range.
+     */
+    public int findIndex(int offset) {
+        if (offset < 0 || offset >= mTotal) {
+            return -1;
+        }
+
+        // Descend the tree, keeping the largest node whose prefix sum is <= offset
+        int node = 0;
+        int remaining = offset;
+        for (int step = mHighestPowerOfTwo; step > 0; step >>= 1) {
+            int next = node + step;
+            if (next < mTree.length && mTree[next] <= remaining) {
+                node = next;
+                remaining -= mTree[next];
+            }
+        }
+
+        // node values sum to at most offset, so the offset falls in the next value,
+        // which cannot be empty since adding it would exceed the offset
+        return node;
+    }
+
+    /**
+     * Rebuilds the tree from the current values in O(n).
+     */
+    private void rebuild() {
+        mTotal = 0;
+        for (int index = 0; index < mValues.length; index++) {
+            Assert.assertTrue(PRECONDITION_NEGATIVE_VALUE, mValues[index] >= 0);
+            mTree[index + 1] = mValues[index];
+            mTotal += mValues[index];
+        }
+
+        for (int node = 1; node < mTree.length; node++) {
+            int parent = node + (node & -node);
+            if (parent < mTree.length) {
+                mTree[parent] += mTree[node];
+            }
+        }
+    }
+
+    /**
+     * Asserts that the given index is in range.
+     * @param index Index to check.
+     */
+    private void checkIndex(int index) {
+        Assert.assertTrue(PRECONDITION_INDEX_OUT_OF_BOUNDS, index >= 0 && index < mValues.length);
+    }
+
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.util;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import junit.framework.Assert;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <p>
+ *     Coordinates memory trimming across the widgets in this library.
+ * </p>
+ *
+ * <p>
+ *     Widgets implementing {@link Trimmable} register with the coordinator, which holds them
+ *     weakly and forwards the system's {@link ComponentCallbacks2#onTrimMemory(int)} calls to
+ *     each of them, collecting how much each one released. On API 14 and up the coordinator
+ *     registers itself with the application automatically. Below API 14 the application
+ *     may forward {@link android.app.Application#onLowMemory()} as
+ *     {@link #onTrimMemory(int)} with {@link ComponentCallbacks2#TRIM_MEMORY_COMPLETE}.
+ * </p>
+ *
+ * <p>
+ *     All methods must be called from the main thread.
+ * </p>
+ */
+public class TrimCoordinator {
+
+    private static final String PRECONDITION_NULL_CONTEXT =
+        "Cannot get the trim coordinator with a null context.";
+
+    private static final String PRECONDITION_NULL_TRIMMABLE =
+        "Cannot register a null trimmable.";
+
+    private static TrimCoordinator sInstance;
+
+    /**
+     * Listener notified for every registered {@link Trimmable} that is trimmed.
+     */
+    public interface OnTrimListener {
+
+        /**
+         * Called after the given trimmable released memory for the given level.
+         * @param trimmable Trimmed object.
+         * @param level Trim level.
+         * @param bytes Estimated number of bytes released.
+         */
+        public void onTrimmed(Trimmable trimmable, int level, long bytes);
+
+    }
+
+    private final List<WeakReference<Trimmable>> mTrimmables = new ArrayList<WeakReference<Trimmable>>();
+
+    private OnTrimListener mListener;
+
+    /**
+     * Gets the application-wide trim coordinator.
+     * @param context {@link Context} of the application.
+     * @return Trim coordinator.
+     */
+    public static TrimCoordinator getInstance(Context context) {
+        Assert.assertTrue(PRECONDITION_NULL_CONTEXT, context != null);
+
+        if (sInstance == null) {
+            sInstance = new TrimCoordinator();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                SystemCallbacks.register(context.getApplicationContext(), sInstance);
+            }
+        }
+
+        return sInstance;
+    }
+
+    private TrimCoordinator() {}
+
+    /**
+     * Registers the given trimmable. The trimmable is held weakly.
+     * @param trimmable Trimmable to register.
+     */
+    public void register(Trimmable trimmable) {
+        Assert.assertTrue(PRECONDITION_NULL_TRIMMABLE, trimmable != null);
+
+        if (indexOf(trimmable) < 0) {
+            mTrimmables.add(new WeakReference<Trimmable>(trimmable));
+        }
+    }
+
+    /**
+     * Unregisters the given trimmable.
+     * @param trimmable Trimmable to unregister.
+     */
+    public void unregister(Trimmable trimmable) {
+        int index = indexOf(trimmable);
+        if (index >= 0) {
+            mTrimmables.remove(index);
+        }
+    }
+
+    /**
+     * Sets the listener to notify as registered trimmables are trimmed.
+     * @param listener Listener to set, may be {@code null}.
+     */
+    public void setOnTrimListener(OnTrimListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Trims every registered trimmable for the given level.
+     * @param level Trim level, one of the {@link ComponentCallbacks2} {@code TRIM_MEMORY_*} constants.
+     * @return Estimated total number of bytes released.
+     */
+    public long onTrimMemory(int level) {
+        // Copy first, trimming may register or unregister widgets
+        List<Trimmable> trimmables = new ArrayList<Trimmable>(mTrimmables.size());
+        Iterator<WeakReference<Trimmable>> iterator = mTrimmables.iterator();
+        while (iterator.hasNext()) {
+            Trimmable trimmable = iterator.next().get();
+            if (trimmable == null) {
+                iterator.remove();
+            } else {
+                trimmables.add(trimmable);
+            }
+        }
+
+        long total = 0;
+        for (Trimmable trimmable : trimmables) {
+            long bytes = trimmable.onTrimMemory(level);
+            total += bytes;
+
+            if (mListener != null) {
+                mListener.onTrimmed(trimmable, level, bytes);
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Estimates the number of bytes of bitmap memory referenced by the given view and its
+     * descendants, through {@link ImageView} drawables and view backgrounds.
+     * @param view View to estimate, may be {@code null}.
+     * @return Estimated bitmap bytes.
+     */
+    public static long estimateBitmapBytes(View view) {
+        if (view == null) {
+            return 0;
+        }
+
+        long bytes = estimateBitmapBytes(view.getBackground());
+        if (view instanceof ImageView) {
+            bytes += estimateBitmapBytes(((ImageView) view).getDrawable());
+        }
+
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int index = 0; index < group.getChildCount(); index++) {
+                bytes += estimateBitmapBytes(group.getChildAt(index));
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Estimates the number of bytes of bitmap memory referenced by the given drawable.
+     * @param drawable Drawable to estimate, may be {@code null}.
+     * @return Estimated bitmap bytes.
+     */
+    private static long estimateBitmapBytes(Drawable drawable) {
+        if (!(drawable instanceof BitmapDrawable)) {
+            return 0;
+        }
+
+        Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+        if (bitmap == null || bitmap.isRecycled()) {
+            return 0;
+        }
+
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * Gets the index of the reference to the given trimmable.
+     * @param trimmable Trimmable to find.
+     * @return Index of the trimmable's reference, {@code -1} if it is not registered.
+     */
+    private int indexOf(Trimmable trimmable) {
+        for (int index = 0; index < mTrimmables.size(); index++) {
+            if (mTrimmables.get(index).get() == trimmable) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * {@link ComponentCallbacks2} that forwards system trim requests to the coordinator.
+     * Kept in its own class so that {@link TrimCoordinator} loads on devices without
+     * {@link ComponentCallbacks2}.
+     */
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static class SystemCallbacks implements ComponentCallbacks2 {
+
+        private final TrimCoordinator mCoordinator;
+
+        private SystemCallbacks(TrimCoordinator coordinator) {
+            mCoordinator = coordinator;
+        }
+
+        public static void register(Context context, TrimCoordinator coordinator) {
+            context.registerComponentCallbacks(new SystemCallbacks(coordinator));
+        }
+
+        @Override
+        public void onTrimMemory(int level) {
+            mCoordinator.onTrimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            mCoordinator.onTrimMemory(TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {}
+
+    }
+
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.util;
+
+/**
+ * Interface describing an object that can release memory when the system runs low.
+ * @see TrimCoordinator
+ */
+public interface Trimmable {
+
+    /**
+     * Releases memory appropriate to the given trim level.
+     * @param level Trim level, one of the {@link android.content.ComponentCallbacks2}
+     *              {@code TRIM_MEMORY_*} constants.
+     * @return Estimated number of bytes released, {@code 0} if nothing measurable was released.
+     */
+    public long onTrimMemory(int level);
+
+}
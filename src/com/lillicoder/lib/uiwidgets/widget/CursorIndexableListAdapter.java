@@ -0,0 +1,308 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.widget;
+
+import android.database.Cursor;
+import android.util.Log;
+import android.widget.BaseExpandableListAdapter;
+import android.widget.SectionIndexer;
+import junit.framework.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *     {@link BaseExpandableListAdapter} implementation over database rows that are too many
+ *     to hold in memory as {@link com.lillicoder.lib.uiwidgets.list.IndexableList}s.
+ * </p>
+ *
+ * <p>
+ *     Sections come from a count cursor with one row per section, typically the result of a
+ *     {@code SELECT key, COUNT(*) ... GROUP BY key ORDER BY key} query. Children come from a
+ *     rows cursor ordered the same way, so the child at a given position of a section is the
+ *     row at that section's start position plus the child position. Rows are decoded with
+ *     {@link #readRow(Cursor)} only when they are asked for, and decoded rows are kept in a
+ *     fixed window of recently used positions. Scrolling keeps the visible range in the
+ *     window and lets rows that scrolled away be reclaimed, so the adapter never holds more
+ *     decoded rows than the window size.
+ * </p>
+ *
+ * <p>
+ *     The count cursor given to the constructor is read before subclass constructors run, so
+ *     {@link #readSectionKey(Cursor)}, {@link #readSectionSize(Cursor)} and
+ *     {@link #getSectionLabel(Object)} must not depend on subclass fields.
+ * </p>
+ *
+ * <p>
+ *     The count cursor is read once and closed. The rows cursor is owned by this adapter
+ *     until it is replaced with {@link #changeCursors(Cursor, Cursor)} or {@link #close()}d.
+ * </p>
+ * @param <K> Type of object sections are indexable by.
+ * @param <E> Type of object rows are decoded to.
+ */
+public abstract class CursorIndexableListAdapter<K extends Comparable<K>, E>
+    extends BaseExpandableListAdapter implements SectionIndexer {
+
+    private static final String TAG = "CursorIndexableListAdapter";
+
+    private static final String PRECONDITION_INVALID_WINDOW_SIZE =
+        "Cannot instantiate this adapter with a window size less than one.";
+
+    private static final String PRECONDITION_GROUP_OUT_OF_BOUNDS =
+        "Group position is out of bounds.";
+
+    private static final String PRECONDITION_CHILD_OUT_OF_BOUNDS =
+        "Child position is out of bounds.";
+
+    private static final String WARNING_MISMATCHED_ROW_COUNT =
+        "Sections count %d rows but the rows cursor has %d, children past the last row will be empty.";
+
+    public static final int DEFAULT_WINDOW_SIZE = 256;
+
+    private final Object[] mWindowRows;
+    private final int[] mWindowPositions;
+
+    private Cursor mRows;
+    private List<K> mSectionKeys;
+    private Indexer mIndexer;
+
+    /**
+     * Instantiates this adapter with the {@link #DEFAULT_WINDOW_SIZE default window size}.
+     * @param sections Count cursor with one row per section, may be {@code null}.
+     * @param rows Rows cursor ordered by section, may be {@code null}.
+     */
+    public CursorIndexableListAdapter(Cursor sections, Cursor rows) {
+        this(sections, rows, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Instantiates this adapter.
+     * @param sections Count cursor with one row per section, may be {@code null}.
+     * @param rows Rows cursor ordered by section, may be {@code null}.
+     * @param windowSize Maximum number of decoded rows to keep. Should be larger than the
+     *                   number of children visible at once.
+     */
+    public CursorIndexableListAdapter(Cursor sections, Cursor rows, int windowSize) {
+        Assert.assertTrue(PRECONDITION_INVALID_WINDOW_SIZE, windowSize > 0);
+
+        mWindowRows = new Object[windowSize];
+        mWindowPositions = new int[windowSize];
+
+        swapCursors(sections, rows);
+    }
+
+    /**
+     * Reads the index key of the count cursor's current row.
+     * @param sections Count cursor, positioned on a section.
+     * @return Index key of the section.
+     */
+    protected abstract K readSectionKey(Cursor sections);
+
+    /**
+     * Reads the number of rows of the count cursor's current row.
+     * @param sections Count cursor, positioned on a section.
+     * @return Number of children of the section.
+     */
+    protected abstract int readSectionSize(Cursor sections);
+
+    /**
+     * Decodes the rows cursor's current row.
+     * @param rows Rows cursor, positioned on the row to decode.
+     * @return Decoded row.
+     */
+    protected abstract E readRow(Cursor rows);
+
+    /**
+     * Gets the label for the given section key.
+     * @param key Index key of a section.
+     * @return Label of the section, the key's {@link Object#toString()} by default.
+     */
+    protected CharSequence getSectionLabel(K key) {
+        return key.toString();
+    }
+
+    /**
+     * Replaces this adapter's cursors and closes the old rows cursor.
+     * @param sections New count cursor, may be {@code null}. It is read and closed.
+     * @param rows New rows cursor, may be {@code null}.
+     */
+    public void changeCursors(Cursor sections, Cursor rows) {
+        Cursor oldRows = swapCursors(sections, rows);
+        if (oldRows != null && oldRows != rows) {
+            oldRows.close();
+        }
+
+        if (rows == null) {
+            notifyDataSetInvalidated();
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Closes the rows cursor and discards every section and decoded row.
+     */
+    public void close() {
+        changeCursors(null, null);
+    }
+
+    /**
+     * Gets the rows cursor.
+     * @return Rows cursor, {@code null} if there is none.
+     */
+    public Cursor getRowsCursor() {
+        return mRows;
+    }
+
+    /**
+     * Discards every decoded row, e.g. after the rows behind the current cursor changed.
+     */
+    public void clearWindow() {
+        for (int slot = 0; slot < mWindowRows.length; slot++) {
+            mWindowRows[slot] = null;
+            mWindowPositions[slot] = Indexer.INVALID_POSITION;
+        }
+    }
+
+    @Override
+    public E getChild(int groupPosition, int childPosition) {
+        // Window slots are derived from the flat position, which must not be negative
+        Assert.assertTrue(PRECONDITION_GROUP_OUT_OF_BOUNDS,
+                          groupPosition >= 0 && groupPosition < mSectionKeys.size());
+        Assert.assertTrue(PRECONDITION_CHILD_OUT_OF_BOUNDS,
+                          childPosition >= 0 && childPosition < mIndexer.getSectionSize(groupPosition));
+
+        return getRow(mIndexer.getPositionForSection(groupPosition) + childPosition);
+    }
+
+    @Override
+    public long getChildId(int groupPosition, int childPosition) {
+        return childPosition;
+    }
+
+    @Override
+    public int getChildrenCount(int groupPosition) {
+        return mIndexer.getSectionSize(groupPosition);
+    }
+
+    @Override
+    public K getGroup(int groupPosition) {
+        return mSectionKeys.get(groupPosition);
+    }
+
+    @Override
+    public int getGroupCount() {
+        return mSectionKeys.size();
+    }
+
+    @Override
+    public long getGroupId(int groupPosition) {
+        return groupPosition;
+    }
+
+    @Override
+    public int getPositionForSection(int section) {
+        return mIndexer.getPositionForSection(section);
+    }
+
+    @Override
+    public Object[] getSections() {
+        return mIndexer.getSections();
+    }
+
+    @Override
+    public int getSectionForPosition(int position) {
+        return mIndexer.getSectionForPosition(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return false;
+    }
+
+    @Override
+    public boolean isChildSelectable(int groupPosition, int childPosition) {
+        return true;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mSectionKeys.isEmpty();
+    }
+
+    /**
+     * Gets the decoded row at the given flat position, decoding it if it is not in the window.
+     * @param position Flat row position.
+     * @return Decoded row, {@code null} if the rows cursor has no such row.
+     */
+    @SuppressWarnings("unchecked")
+    private E getRow(int position) {
+        int slot = position % mWindowRows.length;
+        if (mWindowPositions[slot] == position) {
+            return (E) mWindowRows[slot];
+        }
+
+        if (mRows == null || mRows.isClosed() || !mRows.moveToPosition(position)) {
+            return null;
+        }
+
+        E row = readRow(mRows);
+        mWindowRows[slot] = row;
+        mWindowPositions[slot] = position;
+
+        return row;
+    }
+
+    /**
+     * Reads the given count cursor and replaces the rows cursor without notifying observers.
+     * @param sections New count cursor, may be {@code null}. It is read and closed.
+     * @param rows New rows cursor, may be {@code null}.
+     * @return Previous rows cursor.
+     */
+    private Cursor swapCursors(Cursor sections, Cursor rows) {
+        int sectionCount = sections == null ? 0 : sections.getCount();
+        List<K> keys = new ArrayList<K>(sectionCount);
+        CharSequence[] labels = new CharSequence[sectionCount];
+        int[] sizes = new int[sectionCount];
+
+        if (sections != null) {
+            for (int section = 0; sections.moveToPosition(section); section++) {
+                K key = readSectionKey(sections);
+                keys.add(key);
+                labels[section] = getSectionLabel(key);
+                sizes[section] = readSectionSize(sections);
+            }
+
+            sections.close();
+        }
+
+        Cursor oldRows = mRows;
+        mRows = rows;
+        mSectionKeys = keys;
+        mIndexer = new Indexer(labels, sizes);
+
+        int rowCount = rows == null ? 0 : rows.getCount();
+        if (rows != null && rowCount != mIndexer.getTotalCount()) {
+            Log.w(TAG, String.format(WARNING_MISMATCHED_ROW_COUNT, mIndexer.getTotalCount(), rowCount));
+        }
+
+        clearWindow();
+        return oldRows;
+    }
+
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.widget;
+
+import com.lillicoder.lib.uiwidgets.util.PrefixSumTree;
+import junit.framework.Assert;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     Expanded or collapsed state of each group of a sectioned list.
+ * </p>
+ *
+ * <p>
+ *     Group flags are kept as a bitset, so toggling a group is a single bit flip and
+ *     expanding or collapsing every group is one pass over the words. The number of rows
+ *     each group shows (its header plus its children when expanded) is kept in a
+ *     {@link PrefixSumTree}, so mapping between flat list positions and groups takes
+ *     O(log n) without re-flattening the list.
+ * </p>
+ *
+ * <p>
+ *     The state can be saved as a compact {@code long[]} with {@link #toLongArray()} and
+ *     restored with {@link #restore(long[])}.
+ * </p>
+ */
+public class ExpansionState {
+
+    private static final String PRECONDITION_NULL_SIZES =
+        "Cannot track expansion state with null group sizes.";
+
+    private static final String PRECONDITION_GROUP_OUT_OF_BOUNDS =
+        "Group position is out of bounds.";
+
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+
+    public static final int INVALID_GROUP = -1;
+
+    private int[] mGroupSizes;
+    private long[] mWords;
+    private PrefixSumTree mRowCounts;
+
+    /**
+     * Instantiates this state with every group collapsed.
+     * @param groupSizes Number of children in each group.
+     */
+    public ExpansionState(int[] groupSizes) {
+        Assert.assertTrue(PRECONDITION_NULL_SIZES, groupSizes != null);
+
+        mGroupSizes = groupSizes.clone();
+        mWords = new long[getWordCount(mGroupSizes.length)];
+        mRowCounts = new PrefixSumTree(computeRowCounts());
+    }
+
+    /**
+     * Gets the number of groups.
+     * @return Group count.
+     */
+    public int getGroupCount() {
+        return mGroupSizes.length;
+    }
+
+    /**
+     * Determines if the given group is expanded.
+     * @param group Group position.
+     * @return {@code true} if the group is expanded, {@code false} otherwise.
+     */
+    public boolean isExpanded(int group) {
+        checkGroup(group);
+        return (mWords[group >> ADDRESS_BITS_PER_WORD] & (1L << group)) != 0;
+    }
+
+    /**
+     * Expands the given group.
+     * @param group Group position.
+     * @return {@code true} if the group changed, {@code false} if it was already expanded.
+     */
+    public boolean expand(int group) {
+        return setExpanded(group, true);
+    }
+
+    /**
+     * Collapses the given group.
+     * @param group Group position.
+     * @return {@code true} if the group changed, {@code false} if it was already collapsed.
+     */
+    public boolean collapse(int group) {
+        return setExpanded(group, false);
+    }
+
+    /**
+     * Sets whether or not the given group is expanded.
+     * @param group Group position.
+     * @param expanded {@code true} to expand the group, {@code false} to collapse it.
+     * @return {@code true} if the group changed, {@code false} otherwise.
+     */
+    public boolean setExpanded(int group, boolean expanded) {
+        if (isExpanded(group) == expanded) {
+            return false;
+        }
+
+        mWords[group >> ADDRESS_BITS_PER_WORD] ^= 1L << group;
+        mRowCounts.set(group, getRowCount(group, expanded));
+        return true;
+    }
+
+    /**
+     * Expands every group in a single pass.
+     */
+    public void expandAll() {
+        Arrays.fill(mWords, -1L);
+        clearUnusedBits();
+        mRowCounts.setAll(computeRowCounts());
+    }
+
+    /**
+     * Collapses every group in a single pass.
+     */
+    public void collapseAll() {
+        Arrays.fill(mWords, 0L);
+        mRowCounts.setAll(computeRowCounts());
+    }
+
+    /**
+     * Gets the number of expanded groups.
+     * @return Expanded group count.
+     */
+    public int getExpandedCount() {
+        int count = 0;
+        for (long word : mWords) {
+            count += Long.bitCount(word);
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the number of rows in the flattened list, i.e. every group header plus the
+     * children of every expanded group.
+     * @return Flat row count.
+     */
+    public int getFlatCount() {
+        return mRowCounts.getTotal();
+    }
+
+    /**
+     * Gets the flat position of the given group's header.
+     * @param group Group position.
+     * @return Flat position of the group header.
+     */
+    public int getFlatPosition(int group) {
+        checkGroup(group);
+        return mRowCounts.getPrefixSum(group);
+    }
+
+    /**
+     * Gets the group containing the given flat position.
+     * @param flatPosition Flat position.
+     * @return Group containing the position, {@link #INVALID_GROUP} if the position is out of range.
+     */
+    public int getGroupForFlatPosition(int flatPosition) {
+        int group = mRowCounts.findIndex(flatPosition);
+        return group < 0 ? INVALID_GROUP : group;
+    }
+
+    /**
+     * Updates the group sizes after the underlying data changed. Groups that still exist
+     * keep their state, added groups start collapsed.
+     * @param groupSizes Number of children in each group.
+     */
+    public void setGroupSizes(int[] groupSizes) {
+        Assert.assertTrue(PRECONDITION_NULL_SIZES, groupSizes != null);
+
+        mGroupSizes = groupSizes.clone();
+        mWords = Arrays.copyOf(mWords, getWordCount(mGroupSizes.length));
+        clearUnusedBits();
+        mRowCounts = new PrefixSumTree(computeRowCounts());
+    }
+
+    /**
+     * Gets this state as a compact array of words, one bit per group.
+     * @return Saved state.
+     */
+    public long[] toLongArray() {
+        return mWords.clone();
+    }
+
+    /**
+     * Restores state saved with {@link #toLongArray()}. Saved bits for groups that no
+     * longer exist are ignored, groups missing from the saved state are collapsed.
+     * @param words Saved state, may be {@code null} to collapse every group.
+     */
+    public void restore(long[] words) {
+        Arrays.fill(mWords, 0L);
+        if (words != null) {
+            System.arraycopy(words, 0, mWords, 0, Math.min(words.length, mWords.length));
+            clearUnusedBits();
+        }
+
+        mRowCounts.setAll(computeRowCounts());
+    }
+
+    /**
+     * Computes the number of rows each group currently shows.
+     * @return Row count of each group.
+     */
+    private int[] computeRowCounts() {
+        int[] rowCounts = new int[mGroupSizes.length];
+        for (int group = 0; group < rowCounts.length; group++) {
+            rowCounts[group] = getRowCount(group, isExpanded(group));
+        }
+
+        return rowCounts;
+    }
+
+    /**
+     * Gets the number of rows the given group shows, i.e. its header and, when expanded, its children.
+     * @param group Group position.
+     * @param expanded Whether or not the group is expanded.
+     * @return Row count of the group.
+     */
+    private int getRowCount(int group, boolean expanded) {
+        return expanded ? mGroupSizes[group] + 1 : 1;
+    }
+
+    /**
+     * Clears the bits past the last group in the last word.
+     */
+    private void clearUnusedBits() {
+        int usedBits = mGroupSizes.length & (BITS_PER_WORD - 1);
+        if (usedBits != 0) {
+            mWords[mWords.length - 1] &= (1L << usedBits) - 1;
+        }
+    }
+
+    /**
+     * Asserts that the given group is in range.
+     * @param group Group position to check.
+     */
+    private void checkGroup(int group) {
+        Assert.assertTrue(PRECONDITION_GROUP_OUT_OF_BOUNDS, group >= 0 && group < mGroupSizes.length);
+    }
+
+    /**
+     * Gets the number of words needed to hold the given number of bits.
+     * @param bitCount Number of bits.
+     * @return Word count.
+     */
+    private static int getWordCount(int bitCount) {
+        return (bitCount + BITS_PER_WORD - 1) >> ADDRESS_BITS_PER_WORD;
+    }
+
+}
@@ -0,0 +1,509 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.widget;
+
+import android.widget.SectionIndexer;
+import com.lillicoder.lib.uiwidgets.util.PrefixSumTree;
+import junit.framework.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ *     Index over a list of nested sections, e.g. category, then letter, then item.
+ * </p>
+ *
+ * <p>
+ *     The flattened list shows a header row for every section, followed, when the section is
+ *     expanded, by its subsections or, for sections without subsections, its items. Every
+ *     section with subsections keeps a {@link PrefixSumTree} of the rows each subsection shows,
+ *     so mapping a flat position to its section at any level takes O(log n) per level.
+ *     Expanding or collapsing a section, or changing the item count of a section, only updates
+ *     the prefix sums of its ancestors instead of rebuilding the index.
+ * </p>
+ *
+ * <p>
+ *     Top-level sections are at level {@code 0}, their subsections at level {@code 1} and so on.
+ * </p>
+ */
+public class HierarchicalIndex {
+
+    private static final String PRECONDITION_NULL_SECTIONS =
+        "Cannot instantiate index with null sections.";
+
+    private static final String PRECONDITION_SECTION_ATTACHED =
+        "Cannot add a section that already belongs to another section.";
+
+    private static final String PRECONDITION_NOT_A_LEAF =
+        "Cannot set the item count of a section with subsections.";
+
+    private static final String PRECONDITION_NOT_A_CONTAINER =
+        "Cannot add subsections to a section with items.";
+
+    private static final String PRECONDITION_NEGATIVE_COUNT =
+        "Section item count must not be negative.";
+
+    public static final int INVALID_POSITION = -1;
+
+    private static final int DEEPEST_LEVEL = Integer.MAX_VALUE;
+
+    private final Section mRoot;
+
+    /**
+     * Instantiates this index over the given top-level sections.
+     * @param sections Top-level sections.
+     */
+    public HierarchicalIndex(List<Section> sections) {
+        Assert.assertTrue(PRECONDITION_NULL_SECTIONS, sections != null);
+
+        mRoot = new Section(null, sections);
+        mRoot.mLevel = -1;
+        mRoot.mHasHeader = false;
+        mRoot.updateLevels();
+    }
+
+    /**
+     * Gets the number of rows in the flattened list.
+     * @return Flat row count.
+     */
+    public int getRowCount() {
+        return mRoot.getContentRowCount();
+    }
+
+    /**
+     * Gets the top-level sections.
+     * @return Top-level sections. Must not be modified.
+     */
+    public List<Section> getSections() {
+        return mRoot.mSubsections;
+    }
+
+    /**
+     * Gets the deepest section containing the given flat position. The position is either
+     * the section's header or one of its items.
+     * @param position Flat position.
+     * @return Section containing the position, {@code null} if the position is out of range.
+     */
+    public Section findSection(int position) {
+        return findSection(position, DEEPEST_LEVEL);
+    }
+
+    /**
+     * Gets the section at the given level containing the given flat position.
+     * @param position Flat position.
+     * @param level Level of the section to find.
+     * @return Section containing the position, {@code null} if the position is out of range
+     *         or is the header or item of a section above the given level.
+     */
+    public Section findSection(int position, int level) {
+        if (position < 0 || position >= getRowCount()) {
+            return null;
+        }
+
+        Section section = mRoot;
+        int offset = position;
+        while (true) {
+            if (section.mHasHeader) {
+                if (offset == 0) {
+                    break;
+                }
+
+                offset--;
+            }
+
+            if (section.mLevel == level || section.mSubsections == null) {
+                break;
+            }
+
+            int subsection = section.mSubsectionRows.findIndex(offset);
+            offset -= section.mSubsectionRows.getPrefixSum(subsection);
+            section = section.mSubsections.get(subsection);
+        }
+
+        return section.mLevel == level || level == DEEPEST_LEVEL ? section : null;
+    }
+
+    /**
+     * Gets the item index of the given flat position within its section.
+     * @param position Flat position.
+     * @return Item index within the deepest section containing the position,
+     *         {@link #INVALID_POSITION} if the position is a section header or out of range.
+     */
+    public int getItemIndex(int position) {
+        Section section = findSection(position);
+        if (section == null) {
+            return INVALID_POSITION;
+        }
+
+        return position - section.getFlatPosition() - 1;
+    }
+
+    /**
+     * Gets every section at the given level, in list order.
+     * @param level Level of the sections.
+     * @return Sections at the given level.
+     */
+    public List<Section> getSectionsAtLevel(int level) {
+        List<Section> sections = new ArrayList<Section>();
+        mRoot.collectSections(level, sections);
+        return sections;
+    }
+
+    /**
+     * Gets a {@link SectionIndexer} over the sections at the given level, e.g. for fast
+     * scrolling by letter. The indexer reflects expansion changes but must be replaced after
+     * sections are added.
+     * @param level Level of the sections to index.
+     * @return Section indexer for the given level.
+     */
+    public SectionIndexer getSectionIndexer(int level) {
+        return new LevelIndexer(getSectionsAtLevel(level));
+    }
+
+    /**
+     * <p>
+     *     Section of a {@link HierarchicalIndex}. A section either has subsections or items.
+     * </p>
+     */
+    public static class Section {
+
+        private final CharSequence mLabel;
+
+        private Section mParent;
+        private int mIndexInParent;
+        private int mLevel;
+        private boolean mHasHeader = true;
+        private boolean mExpanded = true;
+
+        private List<Section> mSubsections;
+        private PrefixSumTree mSubsectionRows;
+        private int mItemCount;
+
+        /**
+         * Instantiates a section with items.
+         * @param label Label of the section.
+         * @param itemCount Number of items in the section.
+         */
+        public Section(CharSequence label, int itemCount) {
+            Assert.assertTrue(PRECONDITION_NEGATIVE_COUNT, itemCount >= 0);
+
+            mLabel = label;
+            mItemCount = itemCount;
+        }
+
+        /**
+         * Instantiates a section with subsections.
+         * @param label Label of the section.
+         * @param subsections Subsections of the section.
+         */
+        public Section(CharSequence label, List<Section> subsections) {
+            Assert.assertTrue(PRECONDITION_NULL_SECTIONS, subsections != null);
+
+            mLabel = label;
+            mSubsections = new ArrayList<Section>(subsections.size());
+            for (Section subsection : subsections) {
+                attach(subsection, mSubsections.size());
+                mSubsections.add(subsection);
+            }
+
+            rebuildSubsectionRows();
+        }
+
+        /**
+         * Gets the label of this section.
+         * @return Section label.
+         */
+        public CharSequence getLabel() {
+            return mLabel;
+        }
+
+        /**
+         * Gets the level of this section, {@code 0} for top-level sections.
+         * @return Section level.
+         */
+        public int getLevel() {
+            return mLevel;
+        }
+
+        /**
+         * Gets the section containing this section.
+         * @return Parent section, {@code null} for top-level sections.
+         */
+        public Section getParent() {
+            // The root holding the top-level sections has no header and is not exposed
+            return mParent == null || !mParent.mHasHeader ? null : mParent;
+        }
+
+        /**
+         * Gets the subsections of this section.
+         * @return Subsections, {@code null} if this section has items instead. Must not be modified.
+         */
+        public List<Section> getSubsections() {
+            return mSubsections;
+        }
+
+        /**
+         * Gets the number of items in this section.
+         * @return Item count, {@code 0} for sections with subsections.
+         */
+        public int getItemCount() {
+            return mItemCount;
+        }
+
+        /**
+         * Sets the number of items in this section. Only the prefix sums of this section's
+         * ancestors are updated.
+         * @param itemCount New item count.
+         */
+        public void setItemCount(int itemCount) {
+            Assert.assertTrue(PRECONDITION_NOT_A_LEAF, mSubsections == null);
+            Assert.assertTrue(PRECONDITION_NEGATIVE_COUNT, itemCount >= 0);
+
+            mItemCount = itemCount;
+            if (mExpanded) {
+                onRowCountChanged();
+            }
+        }
+
+        /**
+         * Adds a subsection at the given position. Only this section's prefix sums are rebuilt,
+         * along with the prefix sums of its ancestors.
+         * @param position Position to add the subsection at.
+         * @param subsection Subsection to add.
+         */
+        public void addSubsection(int position, Section subsection) {
+            Assert.assertTrue(PRECONDITION_NOT_A_CONTAINER, mSubsections != null);
+
+            attach(subsection, position);
+            mSubsections.add(position, subsection);
+            for (int index = position; index < mSubsections.size(); index++) {
+                mSubsections.get(index).mIndexInParent = index;
+            }
+
+            subsection.mLevel = mLevel + 1;
+            subsection.updateLevels();
+
+            rebuildSubsectionRows();
+            onRowCountChanged();
+        }
+
+        /**
+         * Determines if this section is expanded.
+         * @return {@code true} if the section is expanded, {@code false} otherwise.
+         */
+        public boolean isExpanded() {
+            return mExpanded;
+        }
+
+        /**
+         * Expands or collapses this section. Subsections keep their own state. Only the
+         * prefix sums of this section's ancestors are updated.
+         * @param expanded {@code true} to expand the section, {@code false} to collapse it.
+         */
+        public void setExpanded(boolean expanded) {
+            if (mExpanded == expanded) {
+                return;
+            }
+
+            mExpanded = expanded;
+            onRowCountChanged();
+        }
+
+        /**
+         * Gets the number of rows this section shows, i.e. its header plus its content when expanded.
+         * @return Row count.
+         */
+        public int getRowCount() {
+            int rows = mHasHeader ? 1 : 0;
+            return mExpanded ? rows + getContentRowCount() : rows;
+        }
+
+        /**
+         * Gets the flat position of this section's header. Sections hidden by a collapsed
+         * ancestor report the position of their outermost collapsed ancestor's header.
+         * @return Flat position of the section header.
+         */
+        public int getFlatPosition() {
+            int position = 0;
+            Section section = this;
+            while (section.mParent != null) {
+                Section parent = section.mParent;
+                if (parent.mExpanded) {
+                    position += parent.mSubsectionRows.getPrefixSum(section.mIndexInParent);
+                    if (parent.mHasHeader) {
+                        position++;
+                    }
+                } else {
+                    // Only the collapsed parent's header is shown
+                    position = 0;
+                }
+
+                section = parent;
+            }
+
+            return position;
+        }
+
+        /**
+         * Determines if this section is shown, i.e. none of its ancestors are collapsed.
+         * @return {@code true} if the section is shown, {@code false} otherwise.
+         */
+        public boolean isVisible() {
+            for (Section parent = mParent; parent != null; parent = parent.mParent) {
+                if (!parent.mExpanded) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Gets the number of rows of this section's content, excluding its header.
+         * @return Content row count.
+         */
+        private int getContentRowCount() {
+            return mSubsections != null ? mSubsectionRows.getTotal() : mItemCount;
+        }
+
+        /**
+         * Propagates a change of this section's row count to its ancestors.
+         */
+        private void onRowCountChanged() {
+            Section section = this;
+            while (section.mParent != null) {
+                Section parent = section.mParent;
+                parent.mSubsectionRows.set(section.mIndexInParent, section.getRowCount());
+
+                // Rows of collapsed sections do not depend on their content
+                if (!parent.mExpanded) {
+                    return;
+                }
+
+                section = parent;
+            }
+        }
+
+        /**
+         * Rebuilds the prefix sums over this section's subsections.
+         */
+        private void rebuildSubsectionRows() {
+            int[] rows = new int[mSubsections.size()];
+            for (int index = 0; index < rows.length; index++) {
+                rows[index] = mSubsections.get(index).getRowCount();
+            }
+
+            mSubsectionRows = new PrefixSumTree(rows);
+        }
+
+        /**
+         * Makes this section the parent of the given subsection.
+         * @param subsection Subsection to attach.
+         * @param position Position of the subsection.
+         */
+        private void attach(Section subsection, int position) {
+            Assert.assertTrue(PRECONDITION_NULL_SECTIONS, subsection != null);
+            Assert.assertTrue(PRECONDITION_SECTION_ATTACHED, subsection.mParent == null);
+
+            subsection.mParent = this;
+            subsection.mIndexInParent = position;
+        }
+
+        /**
+         * Assigns levels to this section's descendants from this section's level.
+         */
+        private void updateLevels() {
+            if (mSubsections == null) {
+                return;
+            }
+
+            for (Section subsection : mSubsections) {
+                subsection.mLevel = mLevel + 1;
+                subsection.updateLevels();
+            }
+        }
+
+        /**
+         * Collects this section's descendants at the given level, in list order.
+         * @param level Level of the sections to collect.
+         * @param sections List to add the sections to.
+         */
+        private void collectSections(int level, List<Section> sections) {
+            if (mLevel == level) {
+                sections.add(this);
+            } else if (mLevel < level && mSubsections != null) {
+                for (Section subsection : mSubsections) {
+                    subsection.collectSections(level, sections);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * {@link SectionIndexer} over the sections of a single level.
+     */
+    private static class LevelIndexer implements SectionIndexer {
+
+        private final List<Section> mSections;
+        private final CharSequence[] mLabels;
+
+        public LevelIndexer(List<Section> sections) {
+            mSections = sections;
+            mLabels = new CharSequence[sections.size()];
+            for (int index = 0; index < mLabels.length; index++) {
+                mLabels[index] = sections.get(index).getLabel();
+            }
+        }
+
+        @Override
+        public Object[] getSections() {
+            return mLabels;
+        }
+
+        @Override
+        public int getPositionForSection(int section) {
+            if (section < 0 || section >= mSections.size()) {
+                return INVALID_POSITION;
+            }
+
+            return mSections.get(section).getFlatPosition();
+        }
+
+        @Override
+        public int getSectionForPosition(int position) {
+            // Sections are in list order, find the last one starting at or before the position
+            int low = 0;
+            int high = mSections.size() - 1;
+            int section = 0;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (mSections.get(middle).getFlatPosition() <= position) {
+                    section = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            return section;
+        }
+
+    }
+
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.widget;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.database.DataSetObserver;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.Adapter;
+import android.widget.ExpandableListAdapter;
+import android.widget.SectionIndexer;
+import com.lillicoder.lib.uiwidgets.R;
+
+/**
+ * <p>
+ *     Side bar that shows the sections of a {@link SectionIndexer}, such as an
+ *     {@link IndexableListAdapter}, and reports the section under the finger while it is touched.
+ * </p>
+ *
+ * <p>
+ *     All labels are drawn by this one view. When there are more sections than fit, labels are
+ *     drawn for evenly spaced sections. The touch-Y to section table and label positions are
+ *     computed once per layout or data change, so dragging only looks up the table and calls
+ *     {@link SectionIndexer#getPositionForSection(int)} when the section changes, without
+ *     allocating.
+ * </p>
+ *
+ * <p>
+ *     Indexers that are also an {@link Adapter} or an {@link ExpandableListAdapter} are observed
+ *     for data changes while the bar is attached to a window. Otherwise call
+ *     {@link #refreshSections()} after the sections change.
+ * </p>
+ */
+public class IndexBarView extends View {
+
+    private static final int NO_SECTION = -1;
+
+    /**
+     * Listener notified as the touched section changes.
+     */
+    public interface OnSectionSelectedListener {
+
+        /**
+         * Called when the section under the finger changes.
+         * @param section Touched section.
+         * @param position Position of the section, from {@link SectionIndexer#getPositionForSection(int)}.
+         */
+        public void onSectionSelected(int section, int position);
+
+    }
+
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mActiveTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private SectionIndexer mSectionIndexer;
+    private OnSectionSelectedListener mListener;
+
+    private String[] mLabels = new String[0];
+    private float mMaxLabelWidth;
+
+    private int[] mSectionForY = new int[0];
+    private int[] mSlotForY = new int[0];
+    private int[] mSlotSections = new int[0];
+    private float[] mSlotBaselines = new float[0];
+
+    private int mActiveSection = NO_SECTION;
+    private int mActiveSlot = NO_SECTION;
+
+    /**
+     * {@link DataSetObserver} that refreshes the sections when the indexer's data changes.
+     */
+    private DataSetObserver mIndexerObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            refreshSections();
+        }
+
+        @Override
+        public void onInvalidated() {
+            refreshSections();
+        }
+    };
+
+    public IndexBarView(Context context) {
+        this(context, null);
+    }
+
+    public IndexBarView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public IndexBarView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+
+        Resources resources = context.getResources();
+        TypedArray attributes = context.obtainStyledAttributes(attrs, R.styleable.IndexBarView, defStyle, 0);
+        float textSize = attributes.getDimension(R.styleable.IndexBarView_android_textSize,
+                                                 resources.getDimension(R.dimen.IndexBarView_textSize));
+        int textColor = attributes.getColor(R.styleable.IndexBarView_android_textColor,
+                                            resources.getColor(R.color.IndexBarView_text));
+        int activeTextColor = attributes.getColor(R.styleable.IndexBarView_activeTextColor,
+                                                  resources.getColor(R.color.IndexBarView_activeText));
+        attributes.recycle();
+
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTextPaint.setTextSize(textSize);
+        mTextPaint.setColor(textColor);
+
+        mActiveTextPaint.set(mTextPaint);
+        mActiveTextPaint.setColor(activeTextColor);
+        mActiveTextPaint.setFakeBoldText(true);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        // Changes made while detached were not observed
+        if (mSectionIndexer != null) {
+            registerIndexerObserver(mSectionIndexer);
+            refreshSections();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        // Indexers may outlive this view, do not let them hold on to it
+        unregisterIndexerObserver(mSectionIndexer);
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Sets the indexer whose sections this bar shows.
+     * @param indexer {@link SectionIndexer} to show, may be {@code null}.
+     */
+    public void setSectionIndexer(SectionIndexer indexer) {
+        // Indexers are only observed while attached, see onAttachedToWindow()
+        boolean isAttached = getWindowToken() != null;
+        if (isAttached) {
+            unregisterIndexerObserver(mSectionIndexer);
+        }
+
+        mSectionIndexer = indexer;
+
+        if (isAttached) {
+            registerIndexerObserver(indexer);
+        }
+
+        refreshSections();
+    }
+
+    /**
+     * Observes the given indexer's data if it is an {@link Adapter} or an
+     * {@link ExpandableListAdapter}.
+     * @param indexer Indexer to observe, may be {@code null}.
+     */
+    private void registerIndexerObserver(SectionIndexer indexer) {
+        if (indexer instanceof Adapter) {
+            ((Adapter) indexer).registerDataSetObserver(mIndexerObserver);
+        } else if (indexer instanceof ExpandableListAdapter) {
+            ((ExpandableListAdapter) indexer).registerDataSetObserver(mIndexerObserver);
+        }
+    }
+
+    /**
+     * Stops observing the given indexer's data.
+     * @param indexer Indexer to stop observing, may be {@code null}.
+     */
+    private void unregisterIndexerObserver(SectionIndexer indexer) {
+        if (indexer instanceof Adapter) {
+            ((Adapter) indexer).unregisterDataSetObserver(mIndexerObserver);
+        } else if (indexer instanceof ExpandableListAdapter) {
+            ((ExpandableListAdapter) indexer).unregisterDataSetObserver(mIndexerObserver);
+        }
+    }
+
+    /**
+     * Gets the indexer whose sections this bar shows.
+     * @return {@link SectionIndexer}, {@code null} if there is none.
+     */
+    public SectionIndexer getSectionIndexer() {
+        return mSectionIndexer;
+    }
+
+    /**
+     * Sets the listener to notify as the touched section changes.
+     * @param listener Listener to set, may be {@code null}.
+     */
+    public void setOnSectionSelectedListener(OnSectionSelectedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Re-reads the indexer's sections and recomputes the section table.
+     */
+    public void refreshSections() {
+        Object[] sections = mSectionIndexer == null ? null : mSectionIndexer.getSections();
+        int sectionCount = sections == null ? 0 : sections.length;
+
+        mLabels = new String[sectionCount];
+        mMaxLabelWidth = 0;
+        for (int section = 0; section < sectionCount; section++) {
+            mLabels[section] = String.valueOf(sections[section]);
+            mMaxLabelWidth = Math.max(mMaxLabelWidth, mActiveTextPaint.measureText(mLabels[section]));
+        }
+
+        mActiveSection = NO_SECTION;
+        mActiveSlot = NO_SECTION;
+
+        computeSectionTable();
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = (int) Math.ceil(mMaxLabelWidth) + getPaddingLeft() + getPaddingRight();
+        width = Math.max(width, getSuggestedMinimumWidth());
+
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec),
+                             getDefaultSize(getSuggestedMinimumHeight(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        computeSectionTable();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        float centerX = getPaddingLeft() + (getWidth() - getPaddingLeft() - getPaddingRight()) / 2f;
+        for (int slot = 0; slot < mSlotSections.length; slot++) {
+            Paint paint = slot == mActiveSlot ? mActiveTextPaint : mTextPaint;
+            canvas.drawText(mLabels[mSlotSections[slot]], centerX, mSlotBaselines[slot], paint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mSectionForY.length == 0) {
+            return false;
+        }
+
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                getParent().requestDisallowInterceptTouchEvent(true);
+                setPressed(true);
+                selectSectionAt(event.getY());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                selectSectionAt(event.getY());
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                setPressed(false);
+                mActiveSection = NO_SECTION;
+                mActiveSlot = NO_SECTION;
+                invalidate();
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    /**
+     * Selects the section at the given touch Y coordinate, notifying the listener if it changed.
+     * @param y Touch Y coordinate in this view.
+     */
+    private void selectSectionAt(float y) {
+        int row = (int) y - getPaddingTop();
+        row = Math.max(0, Math.min(mSectionForY.length - 1, row));
+
+        int section = mSectionForY[row];
+        if (section == mActiveSection) {
+            return;
+        }
+
+        mActiveSection = section;
+        mActiveSlot = mSlotForY[row];
+        invalidate();
+
+        if (mListener != null) {
+            mListener.onSectionSelected(section, mSectionIndexer.getPositionForSection(section));
+        }
+    }
+
+    /**
+     * Computes the section and label slot for every pixel row of the content area, and the
+     * section and baseline of every label slot.
+     */
+    private void computeSectionTable() {
+        int sectionCount = mLabels.length;
+        int contentHeight = Math.max(0, getHeight() - getPaddingTop() - getPaddingBottom());
+        if (sectionCount == 0 || contentHeight == 0) {
+            mSectionForY = new int[0];
+            mSlotForY = new int[0];
+            mSlotSections = new int[0];
+            mSlotBaselines = new float[0];
+            return;
+        }
+
+        Paint.FontMetrics metrics = mTextPaint.getFontMetrics();
+        float lineHeight = metrics.descent - metrics.ascent;
+        int slotCount = Math.max(1, Math.min(sectionCount, (int) (contentHeight / lineHeight)));
+
+        // Evenly spaced sections get a label, centered in their slot
+        float slotHeight = (float) contentHeight / slotCount;
+        float baselineOffset = -(metrics.ascent + metrics.descent) / 2f;
+        mSlotSections = new int[slotCount];
+        mSlotBaselines = new float[slotCount];
+        for (int slot = 0; slot < slotCount; slot++) {
+            mSlotSections[slot] = (int) ((long) slot * sectionCount / slotCount);
+            mSlotBaselines[slot] = getPaddingTop() + (slot + 0.5f) * slotHeight + baselineOffset;
+        }
+
+        // Every section gets an equal share of the rows, whether or not it has a label
+        mSectionForY = new int[contentHeight];
+        mSlotForY = new int[contentHeight];
+        for (int row = 0; row < contentHeight; row++) {
+            mSectionForY[row] = (int) ((long) row * sectionCount / contentHeight);
+            mSlotForY[row] = (int) ((long) row * slotCount / contentHeight);
+        }
+    }
+
+}
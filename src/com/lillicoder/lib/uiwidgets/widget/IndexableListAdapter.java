@@ -1,6 +1,8 @@
 package com.lillicoder.lib.uiwidgets.widget;
 
-import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
 import android.widget.BaseExpandableListAdapter;
 import android.widget.SectionIndexer;
 import com.lillicoder.lib.uiwidgets.list.IndexableList;
@@ -21,6 +23,15 @@ import java.util.*;
  *     a header view representing the indexable information and child views under a
  *     header representing the list items.
  * </p>
+ *
+ * <p>
+ *     Expanding every group of an {@link android.widget.ExpandableListView} one
+ *     {@link android.widget.ExpandableListView#expandGroup(int)} call at a time re-flattens
+ *     the list on every call. For large lists, this adapter keeps its own
+ *     {@link ExpansionState} and offers {@link #getFlatListAdapter()}, a plain list adapter
+ *     over group headers and the children of expanded groups that supports expanding or
+ *     collapsing every group in a single pass.
+ * </p>
  * @param <K> Type of object each indexable list is indexable by.
  * @param <E> Type of object each indexable list contains.
  */
@@ -32,9 +43,17 @@ public abstract class IndexableListAdapter<K extends Comparable<K>, E> extends B
     private static final String PRECONDITION_NULL_MAP =
         "Cannot instantiate this adapter with a null map of sections.";
 
+    public static final int INVALID_POSITION = -1;
+    public static final int INVALID_SECTION = -1;
+
     private List<IndexableList<K, E>> mSections;
 
-    private Indexer<K, E> mIndexer;
+    private Indexer mIndexer;
+    private Map<K, Integer> mSectionsByKey;
+    private boolean mIsSortedByKey;
+    private Map<E, Integer> mPositionsByItem;
+    private ExpansionState mExpansionState;
+    private FlatListAdapter mFlatListAdapter;
 
     /**
      * Instantiates this adapter with the given {@link List} of {@link IndexableList}.
@@ -45,7 +64,8 @@ public abstract class IndexableListAdapter<K extends Comparable<K>, E> extends B
         Assert.assertTrue(PRECONDITION_NULL_LIST, sections != null);
 
         mSections = sections;
-        mIndexer = new Indexer<K, E>(sections);
+        buildIndex();
+        mExpansionState = new ExpansionState(mIndexer.getSectionSizes());
     }
 
     /**
@@ -58,7 +78,34 @@ public abstract class IndexableListAdapter<K extends Comparable<K>, E> extends B
         Assert.assertTrue(PRECONDITION_NULL_MAP, sections != null);
 
         mSections = convertToList(sections);
-        mIndexer = new Indexer<K, E>(mSections);
+        buildIndex();
+        mExpansionState = new ExpansionState(mIndexer.getSectionSizes());
+    }
+
+    /**
+     * Replaces this adapter's sections and notifies observers. The sections are indexed on
+     * the calling thread, use a {@link SectionRebuildPipeline} to index them in the background.
+     * @param sections New list of indexable lists for this adapter,
+     *                 where each indexable list represents a section.
+     */
+    public void setSections(List<IndexableList<K, E>> sections) {
+        Assert.assertTrue(PRECONDITION_NULL_LIST, sections != null);
+
+        mSections = sections;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Replaces this adapter's sections with already indexed ones and notifies observers
+     * without re-indexing.
+     * @param index Index of the new sections.
+     */
+    void setSectionIndex(SectionIndex<K, E> index) {
+        applyIndex(index);
+        mExpansionState.setGroupSizes(mIndexer.getSectionSizes());
+
+        super.notifyDataSetChanged();
+        notifyFlatListChanged();
     }
 
     @Override
@@ -123,6 +170,263 @@ public abstract class IndexableListAdapter<K extends Comparable<K>, E> extends B
         return mSections.isEmpty();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     *     Re-indexes the sections. Groups that still exist keep their expansion state.
+     * </p>
+     */
+    @Override
+    public void notifyDataSetChanged() {
+        buildIndex();
+        mExpansionState.setGroupSizes(mIndexer.getSectionSizes());
+
+        super.notifyDataSetChanged();
+        notifyFlatListChanged();
+    }
+
+    @Override
+    public void notifyDataSetInvalidated() {
+        buildIndex();
+        mExpansionState.setGroupSizes(mIndexer.getSectionSizes());
+
+        super.notifyDataSetInvalidated();
+        if (mFlatListAdapter != null) {
+            mFlatListAdapter.notifyDataSetInvalidated();
+        }
+    }
+
+    @Override
+    public void onGroupExpanded(int groupPosition) {
+        super.onGroupExpanded(groupPosition);
+        if (mExpansionState.expand(groupPosition)) {
+            notifyFlatListChanged();
+        }
+    }
+
+    @Override
+    public void onGroupCollapsed(int groupPosition) {
+        super.onGroupCollapsed(groupPosition);
+        if (mExpansionState.collapse(groupPosition)) {
+            notifyFlatListChanged();
+        }
+    }
+
+    /**
+     * Gets the section with the given index key in O(1).
+     * @param key Index key of the section.
+     * @return Position of the section, {@link #INVALID_SECTION} if no section has the given key.
+     */
+    public int getSectionForKey(K key) {
+        Integer section = mSectionsByKey.get(key);
+        return section == null ? INVALID_SECTION : section;
+    }
+
+    /**
+     * Gets the first section whose index key is greater than or equal to the given key,
+     * e.g. to jump to the letter M when there is no M section. Uses a binary search when
+     * sections are sorted by key and a linear scan otherwise.
+     * @param key Index key to find.
+     * @return Position of the first section at or after the given key,
+     *         {@link #INVALID_SECTION} if every section's key is smaller.
+     */
+    public int findSectionForKey(K key) {
+        Integer exactSection = mSectionsByKey.get(key);
+        if (exactSection != null) {
+            return exactSection;
+        }
+
+        if (mIsSortedByKey) {
+            int low = 0;
+            int high = mSections.size() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (mSections.get(middle).getIndexKey().compareTo(key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            return low < mSections.size() ? low : INVALID_SECTION;
+        }
+
+        // Unsorted, take the smallest key at or after the given one
+        int closestSection = INVALID_SECTION;
+        for (int section = 0; section < mSections.size(); section++) {
+            K sectionKey = mSections.get(section).getIndexKey();
+            if (sectionKey.compareTo(key) >= 0 &&
+                (closestSection == INVALID_SECTION ||
+                 sectionKey.compareTo(mSections.get(closestSection).getIndexKey()) < 0)) {
+                closestSection = section;
+            }
+        }
+
+        return closestSection;
+    }
+
+    /**
+     * Determines if this adapter's sections are in ascending order of their index keys.
+     * @return {@code true} if the sections are sorted by key, {@code false} otherwise.
+     */
+    public boolean isSortedByKey() {
+        return mIsSortedByKey;
+    }
+
+    /**
+     * <p>
+     *     Enables or disables the item index, a hash map from each item to its flat position
+     *     that makes {@link #getPositionForItem(Object)} O(1). The index is rebuilt with the
+     *     rest of this adapter's indexing whenever the data changes, which costs one pass over
+     *     every item, so it should only be enabled when items are looked up often.
+     * </p>
+     *
+     * <p>
+     *     Items must implement {@link Object#hashCode()} consistently with
+     *     {@link Object#equals(Object)}.
+     * </p>
+     * @param enabled {@code true} to keep the item index, {@code false} to drop it.
+     */
+    public void setItemIndexEnabled(boolean enabled) {
+        if (enabled == (mPositionsByItem != null)) {
+            return;
+        }
+
+        if (enabled) {
+            mPositionsByItem = buildItemIndex(mSections);
+        } else {
+            mPositionsByItem = null;
+        }
+    }
+
+    /**
+     * Determines if the item index is enabled.
+     * @return {@code true} if the item index is enabled, {@code false} otherwise.
+     * @see #setItemIndexEnabled(boolean)
+     */
+    public boolean isItemIndexEnabled() {
+        return mPositionsByItem != null;
+    }
+
+    /**
+     * Gets the flat position of the given item, as used by this adapter's {@link SectionIndexer}.
+     * The section and child position follow from {@link #getSectionForPosition(int)} and
+     * {@link #getPositionForSection(int)}. Takes O(1) with the item index enabled, and a scan
+     * over every item otherwise.
+     * @param item Item to find.
+     * @return Flat position of the first occurrence of the item,
+     *         {@link #INVALID_POSITION} if no section contains it.
+     */
+    public int getPositionForItem(E item) {
+        if (mPositionsByItem != null) {
+            Integer position = mPositionsByItem.get(item);
+            return position == null ? INVALID_POSITION : position;
+        }
+
+        for (int section = 0; section < mSections.size(); section++) {
+            int child = mSections.get(section).indexOf(item);
+            if (child >= 0) {
+                return mIndexer.getPositionForSection(section) + child;
+            }
+        }
+
+        return INVALID_POSITION;
+    }
+
+    /**
+     * Gets the indexer for this adapter's current sections. The indexer is replaced,
+     * not modified, when the data changes.
+     * @return Current indexer.
+     */
+    Indexer getIndexer() {
+        return mIndexer;
+    }
+
+    /**
+     * Gets the expansion state of this adapter's groups.
+     * @return Expansion state.
+     */
+    public ExpansionState getExpansionState() {
+        return mExpansionState;
+    }
+
+    /**
+     * Determines if the given group is expanded.
+     * @param groupPosition Group position.
+     * @return {@code true} if the group is expanded, {@code false} otherwise.
+     */
+    public boolean isGroupExpanded(int groupPosition) {
+        return mExpansionState.isExpanded(groupPosition);
+    }
+
+    /**
+     * Sets whether or not the given group is expanded in the flat list adapter.
+     * @param groupPosition Group position.
+     * @param expanded {@code true} to expand the group, {@code false} to collapse it.
+     */
+    public void setGroupExpanded(int groupPosition, boolean expanded) {
+        if (mExpansionState.setExpanded(groupPosition, expanded)) {
+            notifyFlatListChanged();
+        }
+    }
+
+    /**
+     * Expands every group of the flat list adapter in a single pass.
+     */
+    public void expandAll() {
+        mExpansionState.expandAll();
+        notifyFlatListChanged();
+    }
+
+    /**
+     * Collapses every group of the flat list adapter in a single pass.
+     */
+    public void collapseAll() {
+        mExpansionState.collapseAll();
+        notifyFlatListChanged();
+    }
+
+    /**
+     * Saves the expansion state of this adapter's groups.
+     * @return Saved expansion state, one bit per group.
+     * @see #restoreExpansionState(long[])
+     */
+    public long[] saveExpansionState() {
+        return mExpansionState.toLongArray();
+    }
+
+    /**
+     * Restores expansion state saved with {@link #saveExpansionState()}.
+     * @param state Saved expansion state, may be {@code null} to collapse every group.
+     */
+    public void restoreExpansionState(long[] state) {
+        mExpansionState.restore(state);
+        notifyFlatListChanged();
+    }
+
+    /**
+     * <p>
+     *     Gets a list adapter that shows this adapter's groups as a flat list, each group header
+     *     followed by its children when the group is expanded. Views come from
+     *     {@link #getGroupView(int, boolean, View, ViewGroup)} and
+     *     {@link #getChildView(int, int, boolean, View, ViewGroup)}.
+     * </p>
+     *
+     * <p>
+     *     Groups are expanded and collapsed through {@link #setGroupExpanded(int, boolean)},
+     *     {@link #expandAll()} and {@link #collapseAll()}. Section positions reported by the
+     *     returned adapter are flat positions of group headers.
+     * </p>
+     * @return Flat list adapter.
+     */
+    public BaseAdapter getFlatListAdapter() {
+        if (mFlatListAdapter == null) {
+            mFlatListAdapter = new FlatListAdapter();
+        }
+
+        return mFlatListAdapter;
+    }
+
     /**
      * Converts the given sections {@link Map} to a {@link List} of {@link IndexableList}. Each indexable list
      * created will use the key's toString() method as that list's label.
@@ -147,99 +451,205 @@ public abstract class IndexableListAdapter<K extends Comparable<K>, E> extends B
     }
 
     /**
-     * {@link SectionIndexer} implementation that handles creating the proper section tracking information.
-     * @param <K> Type of object sections are indexable by.
-     * @param <E> Type of object each section contains.
+     * Rebuilds the indexer, the key and item indexes from the current sections.
      */
-    private static class Indexer<K extends Comparable<K>, E> implements SectionIndexer {
+    private void buildIndex() {
+        applyIndex(new SectionIndex<K, E>(mSections, mPositionsByItem != null));
+    }
 
-        private static final String TAG = "IndexableListAdapter.Indexer";
+    /**
+     * Takes the sections and index structures of the given index. The item index is built
+     * if it is enabled and the index has none, and ignored if it is disabled.
+     * @param index Index to take.
+     */
+    private void applyIndex(SectionIndex<K, E> index) {
+        mSections = index.mSections;
+        mIndexer = index.mIndexer;
+        mSectionsByKey = index.mSectionsByKey;
+        mIsSortedByKey = index.mIsSortedByKey;
+
+        if (mPositionsByItem != null) {
+            mPositionsByItem = index.mPositionsByItem != null ?
+                index.mPositionsByItem :
+                buildItemIndex(mSections);
+        }
+    }
 
-        private static final String PRECONDITION_NULL_ITEMS =
-            "Cannot instantiate indexer with null items.";
+    /**
+     * Builds an item index over the given sections.
+     * @param sections Sections to index.
+     * @param <K> Type of object each indexable list is indexable by.
+     * @param <E> Type of object each indexable list contains.
+     * @return Flat position of the first occurrence of each item.
+     */
+    private static <K extends Comparable<K>, E> Map<E, Integer> buildItemIndex(List<IndexableList<K, E>> sections) {
+        Map<E, Integer> positionsByItem = new HashMap<E, Integer>();
 
-        private static final String WARNING_POSITION_INDEX_OUT_OF_BOUNDS =
-            "Cannot get section index for position %d, positions range is [0,%d].";
+        int position = 0;
+        for (IndexableList<K, E> section : sections) {
+            for (E item : section) {
+                if (!positionsByItem.containsKey(item)) {
+                    positionsByItem.put(item, position);
+                }
 
-        private static final String WARNING_SECTION_INDEX_OUT_OF_BOUNDS =
-            "Cannot get starting position for section %d, sections range is [0,%d].";
+                position++;
+            }
+        }
+
+        return positionsByItem;
+    }
+
+    /**
+     * Notifies the flat list adapter, if any, that the flattened rows changed.
+     */
+    private void notifyFlatListChanged() {
+        if (mFlatListAdapter != null) {
+            mFlatListAdapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Sections together with the index structures built from them. Holds no reference to an
+     * adapter, so it can be built off the main thread and handed to
+     * {@link #setSectionIndex(SectionIndex)} once finished.
+     * @param <K> Type of object each indexable list is indexable by.
+     * @param <E> Type of object each indexable list contains.
+     */
+    static class SectionIndex<K extends Comparable<K>, E> {
+
+        private final List<IndexableList<K, E>> mSections;
+        private final Indexer mIndexer;
+        private final Map<K, Integer> mSectionsByKey;
+        private final boolean mIsSortedByKey;
+        private final Map<E, Integer> mPositionsByItem;
+
+        /**
+         * Indexes the given sections.
+         * @param sections Sections to index.
+         * @param hasItemIndex {@code true} to also build the item index, {@code false} otherwise.
+         */
+        SectionIndex(List<IndexableList<K, E>> sections, boolean hasItemIndex) {
+            Assert.assertTrue(PRECONDITION_NULL_LIST, sections != null);
+
+            mSections = sections;
+            mIndexer = new Indexer(sections);
+
+            mSectionsByKey = new HashMap<K, Integer>(sections.size() * 2);
+            boolean isSortedByKey = true;
+            K previousKey = null;
+            for (int section = 0; section < sections.size(); section++) {
+                K key = sections.get(section).getIndexKey();
+                if (!mSectionsByKey.containsKey(key)) {
+                    mSectionsByKey.put(key, section);
+                }
+
+                if (previousKey != null && previousKey.compareTo(key) > 0) {
+                    isSortedByKey = false;
+                }
+
+                previousKey = key;
+            }
+
+            mIsSortedByKey = isSortedByKey;
+            mPositionsByItem = hasItemIndex ? buildItemIndex(sections) : null;
+        }
 
-        private static final int INVALID_POSITION = -1;
-        private static final int INVALID_SECTION = -1;
+    }
 
-        private CharSequence[] mSections;
-        private int[] mSectionSizes;
-        private int[] mSectionStartPositions;
+    /**
+     * List adapter over the flattened groups of this adapter.
+     */
+    private class FlatListAdapter extends BaseAdapter implements SectionIndexer {
+
+        @Override
+        public int getCount() {
+            return mExpansionState.getFlatCount();
+        }
 
-        public Indexer(List<IndexableList<K, E>> sections) {
-            Assert.assertTrue(PRECONDITION_NULL_ITEMS, sections != null);
+        @Override
+        public Object getItem(int position) {
+            int groupPosition = mExpansionState.getGroupForFlatPosition(position);
+            int childPosition = getChildPosition(groupPosition, position);
 
-            // One section per list
-            mSections = new CharSequence[sections.size()];
+            return childPosition < 0 ? getGroup(groupPosition) : getChild(groupPosition, childPosition);
+        }
 
-            // One element for each section's size and starting position
-            mSectionSizes = new int[mSections.length];
-            mSectionStartPositions = new int[mSections.length];
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
 
-            // Populate section sizes and starting positions
-            int lastPosition = 0;
-            for (int sectionPosition = 0; sectionPosition < sections.size(); sectionPosition++) {
-                // Section starting position is the last position we reached
-                mSectionStartPositions[sectionPosition] = lastPosition;
+        @Override
+        public int getViewTypeCount() {
+            return getGroupTypeCount() + getChildTypeCount();
+        }
 
-                IndexableList<K, E> section = sections.get(sectionPosition);
-                int sectionSize = section.size();
+        @Override
+        public int getItemViewType(int position) {
+            int groupPosition = mExpansionState.getGroupForFlatPosition(position);
+            int childPosition = getChildPosition(groupPosition, position);
 
-                // Increase position by section size for next section
-                lastPosition += sectionSize;
+            return childPosition < 0 ?
+                getGroupType(groupPosition) :
+                getGroupTypeCount() + getChildType(groupPosition, childPosition);
+        }
 
-                // Store section size
-                mSectionSizes[sectionPosition] = sectionSize;
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            int groupPosition = mExpansionState.getGroupForFlatPosition(position);
+            int childPosition = getChildPosition(groupPosition, position);
+
+            if (childPosition < 0) {
+                return getGroupView(groupPosition,
+                                    mExpansionState.isExpanded(groupPosition),
+                                    convertView,
+                                    parent);
             }
+
+            boolean isLastChild = childPosition == getChildrenCount(groupPosition) - 1;
+            return getChildView(groupPosition, childPosition, isLastChild, convertView, parent);
+        }
+
+        @Override
+        public boolean isEnabled(int position) {
+            int groupPosition = mExpansionState.getGroupForFlatPosition(position);
+            int childPosition = getChildPosition(groupPosition, position);
+
+            return childPosition < 0 || isChildSelectable(groupPosition, childPosition);
         }
 
         @Override
-        public CharSequence[] getSections() {
-            return mSections;
+        public boolean areAllItemsEnabled() {
+            return false;
+        }
+
+        @Override
+        public Object[] getSections() {
+            return mIndexer.getSections();
         }
 
         @Override
         public int getPositionForSection(int section) {
-            if (section < 0 || section >= mSections.length) {
-                Log.w(TAG, String.format(WARNING_SECTION_INDEX_OUT_OF_BOUNDS,
-                                         section,
-                                         mSections.length));
-                return INVALID_POSITION;
+            if (section < 0 || section >= mExpansionState.getGroupCount()) {
+                return Indexer.INVALID_POSITION;
             }
 
-            return mSectionStartPositions[section];
+            return mExpansionState.getFlatPosition(section);
         }
 
         @Override
         public int getSectionForPosition(int position) {
-            // Last item position is the last section's start position plus the position of the last item that section
-            int lastSectionIndex = mSections.length - 1;
-            int lastSectionStartPosition = mSectionStartPositions[lastSectionIndex];
-            int lastSectionLastItemPosition = mSectionSizes[lastSectionIndex] - 1;
-            int lastItemPosition = lastSectionStartPosition + lastSectionLastItemPosition;
-            if (position < 0 || position > lastItemPosition) {
-                Log.w(TAG, String.format(WARNING_POSITION_INDEX_OUT_OF_BOUNDS,
-                                         position,
-                                         lastItemPosition));
-                return INVALID_SECTION;
-            }
+            return mExpansionState.getGroupForFlatPosition(position);
+        }
 
-            int closestSection = Arrays.binarySearch(mSectionStartPositions, position);
-
-            /*
-             * Consider this example: section positions are 0, 3, 5; the supplied
-             * position is 4. The section corresponding to position 4 starts at
-             * position 3, so the expected return value is 1. Binary search will not
-             * find 4 in the array and thus will return -insertPosition-1, i.e. -3.
-             * To get from that number to the expected value of 1 we need to negate
-             * and subtract 2.
-             */
-            return closestSection >= 0 ? closestSection : closestSection - 2;
+        /**
+         * Gets the child position of the given flat position within the given group.
+         * @param groupPosition Group containing the flat position.
+         * @param position Flat position.
+         * @return Child position, {@code -1} if the flat position is the group header.
+         */
+        private int getChildPosition(int groupPosition, int position) {
+            return position - mExpansionState.getFlatPosition(groupPosition) - 1;
         }
 
     }
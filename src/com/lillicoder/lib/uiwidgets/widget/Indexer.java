@@ -0,0 +1,190 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.widget;
+
+import android.util.Log;
+import android.widget.SectionIndexer;
+import com.lillicoder.lib.uiwidgets.list.IndexableList;
+import junit.framework.Assert;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link SectionIndexer} implementation that handles creating the proper section tracking information.
+ * Positions are flat positions over the children of all sections, section headers excluded.
+ */
+class Indexer implements SectionIndexer {
+
+    private static final String TAG = "IndexableListAdapter.Indexer";
+
+    private static final String PRECONDITION_NULL_ITEMS =
+        "Cannot instantiate indexer with null items.";
+
+    private static final String PRECONDITION_MISMATCHED_SIZES =
+        "Cannot instantiate indexer with a different number of labels and section sizes.";
+
+    private static final String WARNING_POSITION_INDEX_OUT_OF_BOUNDS =
+        "Cannot get section index for position %d, positions range is [0,%d].";
+
+    private static final String WARNING_SECTION_INDEX_OUT_OF_BOUNDS =
+        "Cannot get starting position for section %d, sections range is [0,%d].";
+
+    static final int INVALID_POSITION = -1;
+    static final int INVALID_SECTION = -1;
+
+    private CharSequence[] mSections;
+    private int[] mSectionSizes;
+    private int[] mSectionStartPositions;
+    private int mTotalCount;
+
+    /**
+     * Instantiates this indexer for the given sections.
+     * @param sections Sections to index.
+     */
+    public <K extends Comparable<K>, E> Indexer(List<IndexableList<K, E>> sections) {
+        Assert.assertTrue(PRECONDITION_NULL_ITEMS, sections != null);
+
+        // One section per list
+        mSections = new CharSequence[sections.size()];
+
+        // One element for each section's size and starting position
+        mSectionSizes = new int[mSections.length];
+        for (int sectionPosition = 0; sectionPosition < sections.size(); sectionPosition++) {
+            IndexableList<K, E> section = sections.get(sectionPosition);
+            mSections[sectionPosition] = section.getIndexLabel();
+            mSectionSizes[sectionPosition] = section.size();
+        }
+
+        computeStartPositions();
+    }
+
+    /**
+     * Instantiates this indexer for sections with the given labels and sizes.
+     * @param labels Label of each section.
+     * @param sizes Number of children in each section.
+     */
+    public Indexer(CharSequence[] labels, int[] sizes) {
+        Assert.assertTrue(PRECONDITION_NULL_ITEMS, labels != null && sizes != null);
+        Assert.assertTrue(PRECONDITION_MISMATCHED_SIZES, labels.length == sizes.length);
+
+        mSections = labels;
+        mSectionSizes = sizes;
+
+        computeStartPositions();
+    }
+
+    /**
+     * Populates section starting positions from the section sizes.
+     */
+    private void computeStartPositions() {
+        mSectionStartPositions = new int[mSections.length];
+
+        int lastPosition = 0;
+        for (int sectionPosition = 0; sectionPosition < mSections.length; sectionPosition++) {
+            // Section starting position is the last position we reached
+            mSectionStartPositions[sectionPosition] = lastPosition;
+
+            // Increase position by section size for next section
+            lastPosition += mSectionSizes[sectionPosition];
+        }
+
+        mTotalCount = lastPosition;
+    }
+
+    @Override
+    public CharSequence[] getSections() {
+        return mSections;
+    }
+
+    @Override
+    public int getPositionForSection(int section) {
+        if (section < 0 || section >= mSections.length) {
+            Log.w(TAG, String.format(WARNING_SECTION_INDEX_OUT_OF_BOUNDS,
+                                     section,
+                                     mSections.length));
+            return INVALID_POSITION;
+        }
+
+        return mSectionStartPositions[section];
+    }
+
+    @Override
+    public int getSectionForPosition(int position) {
+        // Last item position is the total number of children less one
+        int lastItemPosition = mTotalCount - 1;
+        if (position < 0 || position > lastItemPosition) {
+            Log.w(TAG, String.format(WARNING_POSITION_INDEX_OUT_OF_BOUNDS,
+                                     position,
+                                     lastItemPosition));
+            return INVALID_SECTION;
+        }
+
+        int closestSection = Arrays.binarySearch(mSectionStartPositions, position);
+
+        /*
+         * Consider this example: section positions are 0, 3, 5; the supplied
+         * position is 4. The section corresponding to position 4 starts at
+         * position 3, so the expected return value is 1. Binary search will not
+         * find 4 in the array and thus will return -insertPosition-1, i.e. -3.
+         * To get from that number to the expected value of 1 we need to negate
+         * and subtract 2.
+         */
+        int section = closestSection >= 0 ? closestSection : -closestSection - 2;
+
+        // Empty sections share their start position with the next section, skip past them
+        while (mSectionSizes[section] == 0) {
+            section++;
+        }
+
+        return section;
+    }
+
+    /**
+     * Gets the number of sections.
+     * @return Section count.
+     */
+    public int getSectionCount() {
+        return mSections.length;
+    }
+
+    /**
+     * Gets the number of children in the given section.
+     * @param section Section to get the size of.
+     * @return Section size.
+     */
+    public int getSectionSize(int section) {
+        return mSectionSizes[section];
+    }
+
+    /**
+     * Gets the number of children in each section. The returned array must not be modified.
+     * @return Section sizes.
+     */
+    public int[] getSectionSizes() {
+        return mSectionSizes;
+    }
+
+    /**
+     * Gets the total number of children across all sections.
+     * @return Total child count.
+     */
+    public int getTotalCount() {
+        return mTotalCount;
+    }
+
+}
@@ -0,0 +1,257 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.widget;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import com.lillicoder.lib.uiwidgets.list.IndexableList;
+import junit.framework.Assert;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *     Rebuilds and indexes the sections of an {@link IndexableListAdapter} off the main
+ *     thread, keeping only the latest request.
+ * </p>
+ *
+ * <p>
+ *     Every call to {@link #requestRebuild()} supersedes the previous ones. Requests made while
+ *     a build is queued are coalesced into that build, a build in flight is cancelled as soon as
+ *     a newer request arrives, and only one build runs at a time on the pipeline's worker thread.
+ *     A build also indexes its sections on the worker thread, so the adapter only swaps in the
+ *     finished index when the build is published. A finished build is published to the adapter
+ *     on the main thread only if no newer request was made in the meantime.
+ * </p>
+ *
+ * <p>
+ *     Call {@link #release()} once the pipeline is no longer needed to stop its worker thread.
+ * </p>
+ * @param <K> Type of object each indexable list is indexable by.
+ * @param <E> Type of object each indexable list contains.
+ */
+public class SectionRebuildPipeline<K extends Comparable<K>, E> {
+
+    private static final String THREAD_NAME = "SectionRebuildPipeline";
+
+    private static final String PRECONDITION_NULL_ADAPTER =
+        "Cannot create a rebuild pipeline for a null adapter.";
+
+    private static final String PRECONDITION_NULL_BUILDER =
+        "Cannot create a rebuild pipeline with a null section builder.";
+
+    /**
+     * Builds sections from the current source data. Called on the pipeline's worker thread.
+     * @param <K> Type of object each indexable list is indexable by.
+     * @param <E> Type of object each indexable list contains.
+     */
+    public interface SectionBuilder<K extends Comparable<K>, E> {
+
+        /**
+         * Builds sections from the current source data. Long builds should check
+         * {@link Token#isCancelled()} regularly and return early once it is set.
+         * @param token Cancellation token of this build.
+         * @return Built sections, may be {@code null} if the build was cancelled.
+         */
+        public List<IndexableList<K, E>> buildSections(Token token);
+
+    }
+
+    /**
+     * Listener notified on the main thread when new sections are published.
+     */
+    public interface OnSectionsPublishedListener {
+
+        /**
+         * Called after the adapter received the sections of the given request.
+         * @param pipeline Publishing pipeline.
+         * @param version Version of the published request, see {@link #requestRebuild()}.
+         */
+        public void onSectionsPublished(SectionRebuildPipeline<?, ?> pipeline, int version);
+
+    }
+
+    /**
+     * Cancellation token of a single build.
+     */
+    public static class Token {
+
+        private volatile boolean mCancelled;
+
+        /**
+         * Determines if the build was cancelled because a newer request arrived.
+         * @return {@code true} if the build was cancelled, {@code false} otherwise.
+         */
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        private void cancel() {
+            mCancelled = true;
+        }
+
+    }
+
+    private final IndexableListAdapter<K, E> mAdapter;
+    private final SectionBuilder<K, E> mBuilder;
+
+    private final HandlerThread mWorkerThread;
+    private final Handler mWorkerHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final AtomicInteger mRequestedVersion = new AtomicInteger();
+    private final AtomicBoolean mBuildQueued = new AtomicBoolean();
+
+    private final Runnable mBuildRunnable = new Runnable() {
+        @Override
+        public void run() {
+            build();
+        }
+    };
+
+    private volatile Token mCurrentToken;
+    private volatile boolean mReleased;
+
+    private OnSectionsPublishedListener mListener;
+
+    /**
+     * Instantiates this pipeline for the given adapter.
+     * @param adapter Adapter to publish built sections to.
+     * @param builder Builder of sections.
+     */
+    public SectionRebuildPipeline(IndexableListAdapter<K, E> adapter, SectionBuilder<K, E> builder) {
+        Assert.assertTrue(PRECONDITION_NULL_ADAPTER, adapter != null);
+        Assert.assertTrue(PRECONDITION_NULL_BUILDER, builder != null);
+
+        mAdapter = adapter;
+        mBuilder = builder;
+
+        mWorkerThread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+        mWorkerThread.start();
+        mWorkerHandler = new Handler(mWorkerThread.getLooper());
+    }
+
+    /**
+     * Sets the listener to notify when sections are published.
+     * @param listener Listener to set, may be {@code null}.
+     */
+    public void setOnSectionsPublishedListener(OnSectionsPublishedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Requests a rebuild of the adapter's sections, superseding every earlier request.
+     * May be called from any thread.
+     * @return Version of this request.
+     */
+    public int requestRebuild() {
+        int version = mRequestedVersion.incrementAndGet();
+
+        Token token = mCurrentToken;
+        if (token != null) {
+            token.cancel();
+        }
+
+        // Requests made while a build is queued are picked up by that build
+        if (!mReleased && mBuildQueued.compareAndSet(false, true)) {
+            mWorkerHandler.post(mBuildRunnable);
+        }
+
+        return version;
+    }
+
+    /**
+     * Gets the version of the latest request.
+     * @return Latest requested version, {@code 0} if no rebuild was requested.
+     */
+    public int getRequestedVersion() {
+        return mRequestedVersion.get();
+    }
+
+    /**
+     * Cancels any pending build and stops the worker thread. Nothing is published afterwards.
+     */
+    public void release() {
+        mReleased = true;
+
+        Token token = mCurrentToken;
+        if (token != null) {
+            token.cancel();
+        }
+
+        mWorkerHandler.removeCallbacks(mBuildRunnable);
+        mWorkerThread.quit();
+    }
+
+    /**
+     * Builds and indexes sections for the latest request. Runs on the worker thread.
+     */
+    private void build() {
+        // Requests from here on queue another build
+        mBuildQueued.set(false);
+
+        final int version = mRequestedVersion.get();
+        Token token = new Token();
+        mCurrentToken = token;
+
+        // A request may have slipped in before the token was visible to it
+        if (mReleased || version != mRequestedVersion.get()) {
+            return;
+        }
+
+        List<IndexableList<K, E>> sections = mBuilder.buildSections(token);
+        if (sections == null || token.isCancelled()) {
+            return;
+        }
+
+        // The adapter builds the item index itself if it was enabled after this read
+        final IndexableListAdapter.SectionIndex<K, E> index =
+            new IndexableListAdapter.SectionIndex<K, E>(sections, mAdapter.isItemIndexEnabled());
+        if (token.isCancelled()) {
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                publish(version, index);
+            }
+        });
+    }
+
+    /**
+     * Publishes the given index to the adapter if it belongs to the latest request.
+     * Runs on the main thread.
+     * @param version Version of the request the index was built for.
+     * @param index Index of the built sections.
+     */
+    private void publish(int version, IndexableListAdapter.SectionIndex<K, E> index) {
+        if (mReleased || version != mRequestedVersion.get()) {
+            return;
+        }
+
+        mAdapter.setSectionIndex(index);
+        if (mListener != null) {
+            mListener.onSectionsPublished(this, version);
+        }
+    }
+
+}
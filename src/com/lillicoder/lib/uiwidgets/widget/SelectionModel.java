@@ -0,0 +1,465 @@
+/**
+ * Copyright 2013 Scott Weeden-Moody
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.lillicoder.lib.uiwidgets.widget;
+
+import android.database.DataSetObserver;
+import com.lillicoder.lib.uiwidgets.util.CompressedBitSet;
+import junit.framework.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ *     Multi-selection over the children of an {@link IndexableListAdapter}.
+ * </p>
+ *
+ * <p>
+ *     Selected children are kept in a {@link CompressedBitSet} over the adapter's flat
+ *     child positions, i.e. the positions of its {@link android.widget.SectionIndexer}.
+ *     Selecting or clearing a whole section is a range operation starting at the section's
+ *     start position, and the number of selected children of each section is kept as it
+ *     changes, so neither requires walking the section's children.
+ * </p>
+ *
+ * <p>
+ *     The model observes the adapter. When its data changes, sections selected as a whole,
+ *     by {@link #setSectionSelected(int, boolean)} or {@link #selectAll()}, stay wholly
+ *     selected as the new section with the same index key, children included. Children
+ *     selected or deselected one at a time are matched to the new data by item, using
+ *     {@link Object#equals(Object)}, so they keep their state wherever they moved. To know
+ *     which items these were once the data has changed in place, the model records the
+ *     item of each such child as it is toggled, and only while its state differs from its
+ *     section's. Recorded items are looked up with
+ *     {@link IndexableListAdapter#getPositionForItem(Object)} when the adapter's item index
+ *     is enabled, and otherwise only within the new section with the same index key.
+ *     Items that cannot be found are dropped, and equal items are matched to the first of
+ *     them. When the adapter is invalidated the selection is cleared.
+ * </p>
+ *
+ * <p>
+ *     Call {@link #release()} once the model is no longer needed.
+ * </p>
+ * @param <K> Type of object the adapter's sections are indexable by.
+ */
+public class SelectionModel<K extends Comparable<K>> {
+
+    private static final String PRECONDITION_NULL_ADAPTER =
+        "Cannot create a selection model for a null adapter.";
+
+    private static final String PRECONDITION_SECTION_OUT_OF_BOUNDS =
+        "Section position is out of bounds.";
+
+    private static final String PRECONDITION_CHILD_OUT_OF_BOUNDS =
+        "Child position is out of bounds.";
+
+    /**
+     * Listener notified when the selection changes.
+     */
+    public interface OnSelectionChangedListener {
+
+        /**
+         * Called after the selection of the given model changed.
+         * @param model Changed selection model.
+         */
+        public void onSelectionChanged(SelectionModel<?> model);
+
+    }
+
+    private final IndexableListAdapter<K, ?> mAdapter;
+
+    private final DataSetObserver mAdapterObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            remapSelection();
+        }
+
+        @Override
+        public void onInvalidated() {
+            reset();
+        }
+    };
+
+    private Indexer mIndexer;
+    private List<K> mSectionKeys;
+    private int[] mSectionSelectedCounts;
+    private boolean[] mWholeSections;
+    private TreeMap<Integer, Object> mToggledItems;
+    private CompressedBitSet mSelection;
+
+    private OnSelectionChangedListener mListener;
+
+    /**
+     * Instantiates this model for the given adapter with nothing selected.
+     * @param adapter Adapter whose children can be selected.
+     */
+    public SelectionModel(IndexableListAdapter<K, ?> adapter) {
+        Assert.assertTrue(PRECONDITION_NULL_ADAPTER, adapter != null);
+
+        mAdapter = adapter;
+        mAdapter.registerDataSetObserver(mAdapterObserver);
+
+        snapshotSections();
+        mSelection = new CompressedBitSet(mIndexer.getTotalCount());
+    }
+
+    /**
+     * Stops observing the adapter.
+     */
+    public void release() {
+        mAdapter.unregisterDataSetObserver(mAdapterObserver);
+    }
+
+    /**
+     * Sets the listener to notify when the selection changes.
+     * @param listener Listener to set, may be {@code null}.
+     */
+    public void setOnSelectionChangedListener(OnSelectionChangedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Determines if the given child is selected.
+     * @param section Section position.
+     * @param child Child position within the section.
+     * @return {@code true} if the child is selected, {@code false} otherwise.
+     */
+    public boolean isSelected(int section, int child) {
+        return mSelection.get(getFlatPosition(section, child));
+    }
+
+    /**
+     * Selects or deselects the given child.
+     * @param section Section position.
+     * @param child Child position within the section.
+     * @param selected {@code true} to select the child, {@code false} to deselect it.
+     */
+    public void setSelected(int section, int child, boolean selected) {
+        int position = getFlatPosition(section, child);
+        if (mSelection.set(position, selected)) {
+            onChildToggled(section, position, selected);
+            notifySelectionChanged();
+        }
+    }
+
+    /**
+     * Toggles the selection of the given child.
+     * @param section Section position.
+     * @param child Child position within the section.
+     */
+    public void toggle(int section, int child) {
+        setSelected(section, child, !isSelected(section, child));
+    }
+
+    /**
+     * Determines if the child at the given flat position is selected.
+     * @param position Flat child position, as used by the adapter's {@link android.widget.SectionIndexer}.
+     * @return {@code true} if the child is selected, {@code false} otherwise.
+     */
+    public boolean isPositionSelected(int position) {
+        return mSelection.get(position);
+    }
+
+    /**
+     * Selects or deselects the child at the given flat position.
+     * @param position Flat child position, as used by the adapter's {@link android.widget.SectionIndexer}.
+     * @param selected {@code true} to select the child, {@code false} to deselect it.
+     */
+    public void setPositionSelected(int position, boolean selected) {
+        if (mSelection.set(position, selected)) {
+            onChildToggled(mIndexer.getSectionForPosition(position), position, selected);
+            notifySelectionChanged();
+        }
+    }
+
+    /**
+     * Selects or deselects every child of the given section.
+     * @param section Section position.
+     * @param selected {@code true} to select the children, {@code false} to deselect them.
+     */
+    public void setSectionSelected(int section, boolean selected) {
+        checkSection(section);
+
+        setSectionRange(section, selected);
+        notifySelectionChanged();
+    }
+
+    /**
+     * Determines if every child of the given section is selected. Empty sections are never selected.
+     * @param section Section position.
+     * @return {@code true} if the whole section is selected, {@code false} otherwise.
+     */
+    public boolean isSectionSelected(int section) {
+        checkSection(section);
+
+        int size = mIndexer.getSectionSize(section);
+        return size > 0 && mSectionSelectedCounts[section] == size;
+    }
+
+    /**
+     * Selects every child of every section.
+     */
+    public void selectAll() {
+        mSelection.set(0, mSelection.size(), true);
+        for (int section = 0; section < mSectionSelectedCounts.length; section++) {
+            mSectionSelectedCounts[section] = mIndexer.getSectionSize(section);
+            mWholeSections[section] = true;
+        }
+        mToggledItems.clear();
+
+        notifySelectionChanged();
+    }
+
+    /**
+     * Deselects every child.
+     */
+    public void clearSelection() {
+        mSelection.clear();
+        for (int section = 0; section < mSectionSelectedCounts.length; section++) {
+            mSectionSelectedCounts[section] = 0;
+            mWholeSections[section] = false;
+        }
+        mToggledItems.clear();
+
+        notifySelectionChanged();
+    }
+
+    /**
+     * Gets the number of selected children.
+     * @return Selected child count.
+     */
+    public int getSelectedCount() {
+        return mSelection.cardinality();
+    }
+
+    /**
+     * Gets the number of selected children of the given section.
+     * @param section Section position.
+     * @return Selected child count of the section.
+     */
+    public int getSelectedCount(int section) {
+        checkSection(section);
+        return mSectionSelectedCounts[section];
+    }
+
+    /**
+     * Gets the first selected flat position at or after the given position. Selected
+     * children can be visited with
+     * {@code for (int p = nextSelectedPosition(0); p >= 0; p = nextSelectedPosition(p + 1))}.
+     * @param from Flat position to start searching from.
+     * @return Next selected flat position, {@code -1} if there is none.
+     */
+    public int nextSelectedPosition(int from) {
+        return mSelection.nextSetBit(from);
+    }
+
+    /**
+     * Gets the flat position of the given child.
+     * @param section Section position.
+     * @param child Child position within the section.
+     * @return Flat child position.
+     */
+    private int getFlatPosition(int section, int child) {
+        checkSection(section);
+        Assert.assertTrue(PRECONDITION_CHILD_OUT_OF_BOUNDS,
+                          child >= 0 && child < mIndexer.getSectionSize(section));
+
+        return mIndexer.getPositionForSection(section) + child;
+    }
+
+    /**
+     * Selects or deselects every child of the given section, without notifying the listener.
+     * @param section Section position.
+     * @param selected {@code true} to select the children, {@code false} to deselect them.
+     */
+    private void setSectionRange(int section, boolean selected) {
+        int start = mIndexer.getPositionForSection(section);
+        int size = mIndexer.getSectionSize(section);
+        mSelection.set(start, start + size, selected);
+        mSectionSelectedCounts[section] = selected ? size : 0;
+
+        // Every child now has the section's state
+        mWholeSections[section] = selected;
+        mToggledItems.subMap(start, start + size).clear();
+    }
+
+    /**
+     * Updates the selected count of the given section after one of its children was toggled,
+     * and records the child's item while its state differs from the section's.
+     * @param section Section position.
+     * @param position Flat position of the toggled child.
+     * @param selected {@code true} if the child was selected, {@code false} if it was deselected.
+     */
+    private void onChildToggled(int section, int position, boolean selected) {
+        mSectionSelectedCounts[section] += selected ? 1 : -1;
+
+        if (selected != mWholeSections[section]) {
+            int child = position - mIndexer.getPositionForSection(section);
+            mToggledItems.put(position, mAdapter.getChild(section, child));
+        } else {
+            mToggledItems.remove(position);
+        }
+    }
+
+    /**
+     * Carries the selection over to the adapter's new data. Whole sections are matched by
+     * index key, toggled children by item.
+     */
+    private void remapSelection() {
+        Indexer oldIndexer = mIndexer;
+        List<K> oldKeys = mSectionKeys;
+        boolean[] oldWholeSections = mWholeSections;
+        TreeMap<Integer, Object> oldToggledItems = mToggledItems;
+
+        snapshotSections();
+        mSelection = new CompressedBitSet(mIndexer.getTotalCount());
+
+        for (int oldSection = 0; oldSection < oldWholeSections.length; oldSection++) {
+            if (oldWholeSections[oldSection]) {
+                int section = mAdapter.getSectionForKey(oldKeys.get(oldSection));
+                if (section != IndexableListAdapter.INVALID_SECTION) {
+                    setSectionRange(section, true);
+                }
+            }
+        }
+
+        // Without the item index, items are only looked for in the section with the same key
+        boolean hasItemIndex = mAdapter.isItemIndexEnabled();
+        Map<Integer, Map<Object, Integer>> childrenBySection =
+            hasItemIndex ? null : new HashMap<Integer, Map<Object, Integer>>();
+        for (Map.Entry<Integer, Object> entry : oldToggledItems.entrySet()) {
+            int oldSection = oldIndexer.getSectionForPosition(entry.getKey());
+            boolean selected = !oldWholeSections[oldSection];
+
+            int position;
+            if (hasItemIndex) {
+                position = getPositionForItem(mAdapter, entry.getValue());
+            } else {
+                position = getPositionInSection(oldKeys.get(oldSection), entry.getValue(), childrenBySection);
+            }
+
+            if (position != IndexableListAdapter.INVALID_POSITION && mSelection.set(position, selected)) {
+                onChildToggled(mIndexer.getSectionForPosition(position), position, selected);
+            }
+        }
+
+        notifySelectionChanged();
+    }
+
+    /**
+     * Gets the flat position of the given item within the section with the given key.
+     * @param key Index key of the section to look in.
+     * @param item Item to find.
+     * @param childrenBySection Children of the sections looked in so far, by section position.
+     * @return Flat position of the item, {@link IndexableListAdapter#INVALID_POSITION} if
+     *         the section does not exist or does not contain the item.
+     */
+    private int getPositionInSection(K key, Object item, Map<Integer, Map<Object, Integer>> childrenBySection) {
+        int section = mAdapter.getSectionForKey(key);
+        if (section == IndexableListAdapter.INVALID_SECTION) {
+            return IndexableListAdapter.INVALID_POSITION;
+        }
+
+        Map<Object, Integer> childrenByItem = childrenBySection.get(section);
+        if (childrenByItem == null) {
+            childrenByItem = indexChildren(section);
+            childrenBySection.put(section, childrenByItem);
+        }
+
+        Integer child = childrenByItem.get(item);
+        return child == null ?
+            IndexableListAdapter.INVALID_POSITION :
+            mIndexer.getPositionForSection(section) + child;
+    }
+
+    /**
+     * Maps each child of the given section to its child position, keeping the first of equal children.
+     * @param section Section position.
+     * @return Child positions by item.
+     */
+    private Map<Object, Integer> indexChildren(int section) {
+        List<?> children = mAdapter.getGroup(section);
+        Map<Object, Integer> childrenByItem = new HashMap<Object, Integer>(children.size() * 2);
+        for (int child = children.size() - 1; child >= 0; child--) {
+            childrenByItem.put(children.get(child), child);
+        }
+
+        return childrenByItem;
+    }
+
+    /**
+     * Clears the selection and re-reads the adapter's sections.
+     */
+    private void reset() {
+        snapshotSections();
+        mSelection = new CompressedBitSet(mIndexer.getTotalCount());
+
+        notifySelectionChanged();
+    }
+
+    /**
+     * Records the adapter's current indexer and section keys, and allocates cleared section state.
+     */
+    private void snapshotSections() {
+        mIndexer = mAdapter.getIndexer();
+
+        int sectionCount = mIndexer.getSectionCount();
+        mSectionKeys = new ArrayList<K>(sectionCount);
+        for (int section = 0; section < sectionCount; section++) {
+            mSectionKeys.add(mAdapter.getGroup(section).getIndexKey());
+        }
+
+        mSectionSelectedCounts = new int[sectionCount];
+        mWholeSections = new boolean[sectionCount];
+        mToggledItems = new TreeMap<Integer, Object>();
+    }
+
+    /**
+     * Gets the flat position of the given item in the given adapter.
+     * @param adapter Adapter whose children the item was taken from.
+     * @param item Item to find.
+     * @param <E> Type of object the adapter's sections contain.
+     * @return Flat position of the item, {@link IndexableListAdapter#INVALID_POSITION} if
+     *         the adapter no longer contains it.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> int getPositionForItem(IndexableListAdapter<?, E> adapter, Object item) {
+        return adapter.getPositionForItem((E) item);
+    }
+
+    /**
+     * Notifies the listener, if any, that the selection changed.
+     */
+    private void notifySelectionChanged() {
+        if (mListener != null) {
+            mListener.onSelectionChanged(this);
+        }
+    }
+
+    /**
+     * Asserts that the given section is in range.
+     * @param section Section position to check.
+     */
+    private void checkSection(int section) {
+        Assert.assertTrue(PRECONDITION_SECTION_OUT_OF_BOUNDS,
+                          section >= 0 && section < mSectionSelectedCounts.length);
+    }
+
+}